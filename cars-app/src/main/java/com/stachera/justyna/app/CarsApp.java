@@ -1,5 +1,7 @@
 package com.stachera.justyna.app;
 
+import com.stachera.justyna.services.HttpServiceImpl;
+import com.stachera.justyna.services.ImportServiceImpl;
 import com.stachera.justyna.services.MenuServiceImpl;
 
 /**
@@ -7,13 +9,30 @@ import com.stachera.justyna.services.MenuServiceImpl;
  * Package name: com.stachera.justyna
  * Last modified 21:37.
  * Copyright (c) 2019. All rights reserved.
+ *
+ * Usage: CarsApp [server [port [bind-address]] | import feed-file]
  */
 public class CarsApp
 {
     private static final String CARS_SOURCE_FILE = "/cars-app/src/main/resources/cars.json";
+    private static final int DEFAULT_PORT = 8080;
 
     public static void main(String[] args)
     {
-        MenuServiceImpl.run(CARS_SOURCE_FILE);
+        if (args.length > 0 && args[0].equalsIgnoreCase("server"))
+        {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+            if (args.length > 2) HttpServiceImpl.run(CARS_SOURCE_FILE, args[2], port);
+            else HttpServiceImpl.run(CARS_SOURCE_FILE, port);
+        }
+        else if (args.length > 1 && args[0].equalsIgnoreCase("import"))
+        {
+            if (!ImportServiceImpl.run(CARS_SOURCE_FILE, args[1])) System.exit(1);
+        }
+        else
+        {
+            MenuServiceImpl.run(CARS_SOURCE_FILE);
+        }
     }
 }
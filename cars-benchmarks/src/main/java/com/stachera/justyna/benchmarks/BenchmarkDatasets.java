@@ -0,0 +1,42 @@
+package com.stachera.justyna.benchmarks;
+
+import com.stachera.justyna.models.models.Cars;
+
+import java.io.File;
+
+/**
+ * Developed by Justyna Stachera on 14.03.2019.
+ * Package name: com.stachera.justyna.benchmarks
+ * Last modified 19:48.
+ * Copyright (c) 2019. All rights reserved.
+ */
+public final class BenchmarkDatasets
+{
+    private static final String DATASET_DIRECTORY = "/target/benchmarks";
+
+    private BenchmarkDatasets()
+    {
+    }
+
+    /**
+     * It returns the project relative path of a cars file with the given number
+     * of cars, generating the file when it does not exist yet.
+     *
+     * @param carCount number of cars
+     * @return project relative file path
+     */
+    public static String prepare(final int carCount)
+    {
+        String filePath = DATASET_DIRECTORY + "/cars-" + carCount + ".json";
+        File file = new File(Cars.prepareFilePath(filePath));
+
+        if (!file.exists())
+        {
+            file.getParentFile().mkdirs();
+
+            new CarsGenerator(carCount, CarsGenerator.DEFAULT_SEED).write(file.getPath());
+        }
+
+        return filePath;
+    }
+}
@@ -0,0 +1,30 @@
+package com.stachera.justyna.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Developed by Justyna Stachera on 14.03.2019.
+ * Package name: com.stachera.justyna.benchmarks
+ * Last modified 20:15.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Runs the benchmarks with the GC profiler attached, so every result reports
+ * the allocation rate next to the time. Regular JMH command line options are
+ * accepted, e.g. "-p carCount=1000 CarServiceBenchmark".
+ */
+public class BenchmarkRunner
+{
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
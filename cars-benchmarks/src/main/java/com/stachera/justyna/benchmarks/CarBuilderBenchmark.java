@@ -0,0 +1,52 @@
+package com.stachera.justyna.benchmarks;
+
+import com.stachera.justyna.exceptions.ExceptionCode;
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.models.Car;
+import com.stachera.justyna.models.models.CarValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Developed by Justyna Stachera on 14.03.2019.
+ * Package name: com.stachera.justyna.benchmarks
+ * Last modified 20:31.
+ * Copyright (c) 2019. All rights reserved.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CarBuilderBenchmark
+{
+    private final String model = "TOYOTA";
+    private final BigDecimal price = new BigDecimal("12500.50");
+    private final Integer mileage = 15_500;
+    private final List<String> components = Arrays.asList("ABS", "AIR CONDITIONING", "BLUETOOTH", "ALLOY WHEELS");
+    private final Car car = new Car(model, price, Colour.B2, mileage, components);
+
+    @Benchmark
+    public Car build()
+    {
+        return Car.builder()
+                .model(model)
+                .price(price)
+                .colour(Colour.B2)
+                .mileage(mileage)
+                .components(components)
+                .build();
+    }
+
+    // the validation stage of the bulk import, expected to allocate nothing
+    @Benchmark
+    public ExceptionCode validate()
+    {
+        return CarValidator.validate(car);
+    }
+}
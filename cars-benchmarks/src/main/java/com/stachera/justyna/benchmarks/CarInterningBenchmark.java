@@ -0,0 +1,75 @@
+package com.stachera.justyna.benchmarks;
+
+import com.stachera.justyna.json.SymbolTable;
+import com.stachera.justyna.models.converters.CarJsonConverter;
+import com.stachera.justyna.models.models.Cars;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Developed by Justyna Stachera on 21.03.2019.
+ * Package name: com.stachera.justyna.benchmarks
+ * Last modified 20:38.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Loads the whole dataset with and without interning models and components.
+ * The score is the load time; the heap retained by the loaded cars is printed
+ * after every iteration.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class CarInterningBenchmark
+{
+    @Param({"100000", "1000000"})
+    private int carCount;
+
+    @Param({"true", "false"})
+    private boolean interning;
+
+    private String jsonFileName;
+    private Cars cars;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        jsonFileName = Cars.prepareFilePath(BenchmarkDatasets.prepare(carCount));
+    }
+
+    /**
+     * The retained heap is the difference of the used heap before and after the loaded cars are released.
+     */
+    @TearDown(Level.Iteration)
+    public void reportRetainedHeap()
+    {
+        int size = cars.getCars().size();
+        long used = usedHeap();
+
+        cars = null;
+
+        System.out.printf("%nretained heap: %.1f MB (interning=%s, cars=%d)%n",
+                          (used - usedHeap()) / 1024.0 / 1024.0, interning, size);
+    }
+
+    // the result is kept in a field only, so no other reference distorts the retained heap
+    @Benchmark
+    public void load()
+    {
+        cars = new CarJsonConverter(jsonFileName, interning ? new SymbolTable() : null).convert();
+    }
+
+    private static long usedHeap()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,63 @@
+package com.stachera.justyna.benchmarks;
+
+import com.stachera.justyna.models.converters.CarJsonConverter;
+import com.stachera.justyna.models.models.Cars;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Developed by Justyna Stachera on 14.03.2019.
+ * Package name: com.stachera.justyna.benchmarks
+ * Last modified 20:52.
+ * Copyright (c) 2019. All rights reserved.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class CarJsonConverterBenchmark
+{
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int carCount;
+
+    private String jsonFileName;
+    private String copyFileName;
+    private Cars cars;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        jsonFileName = Cars.prepareFilePath(BenchmarkDatasets.prepare(carCount));
+        copyFileName = jsonFileName + ".copy";
+        cars = new CarJsonConverter(jsonFileName).convert();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        new File(copyFileName).delete();
+    }
+
+    @Benchmark
+    public Cars load()
+    {
+        return new CarJsonConverter(jsonFileName).convert();
+    }
+
+    @Benchmark
+    public void loadStreaming(Blackhole blackhole)
+    {
+        new CarJsonConverter(jsonFileName).convert(blackhole::consume);
+    }
+
+    @Benchmark
+    public void save()
+    {
+        new CarJsonConverter(copyFileName).convert(cars);
+    }
+}
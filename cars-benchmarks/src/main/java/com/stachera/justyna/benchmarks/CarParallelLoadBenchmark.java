@@ -0,0 +1,46 @@
+package com.stachera.justyna.benchmarks;
+
+import com.stachera.justyna.models.converters.CarJsonConverter;
+import com.stachera.justyna.models.models.Cars;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Developed by Justyna Stachera on 23.03.2019.
+ * Package name: com.stachera.justyna.benchmarks
+ * Last modified 21:41.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Scaling of the chunked parallel load with the number of parsing threads.
+ * One thread is the sequential streaming read.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class CarParallelLoadBenchmark
+{
+    @Param({"1000000"})
+    private int carCount;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    private int threads;
+
+    private String jsonFileName;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        jsonFileName = Cars.prepareFilePath(BenchmarkDatasets.prepare(carCount));
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole)
+    {
+        new CarJsonConverter(jsonFileName).convert(blackhole::consume, threads);
+    }
+}
@@ -0,0 +1,213 @@
+package com.stachera.justyna.benchmarks;
+
+import com.stachera.justyna.models.converters.CarJsonConverter;
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.models.Car;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Developed by Justyna Stachera on 16.03.2019.
+ * Package name: com.stachera.justyna.benchmarks
+ * Last modified 19:05.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Deterministic generator of large cars files. The same seed and settings
+ * always give the same file. Cars are produced one at a time and streamed to
+ * the file, so memory use does not depend on the number of cars.
+ *
+ * Usage: CarsGenerator output-file car-count [seed] [model-count] [component-count] [colour-skew]
+ */
+public class CarsGenerator implements Iterator<Car>
+{
+    public static final long DEFAULT_SEED = 20190316L;
+    public static final int DEFAULT_MODEL_COUNT = 300;
+    public static final int DEFAULT_COMPONENT_COUNT = 40;
+    public static final double DEFAULT_COLOUR_SKEW = 1.0;
+
+    private static final Colour[] COLOURS = Colour.values();
+    private static final int MAX_MILEAGE = 999_999;
+
+    private final long carCount;
+    private final Random random;
+    private final String[] models;
+    private final double[] modelBasePrices;
+    private final double[] modelDistribution;
+    private final String[] components;
+    private final double[] componentDistribution;
+    private final double[] colourDistribution;
+
+    private long generated;
+
+    /**
+     * @param carCount       number of cars to generate
+     * @param seed           random seed
+     * @param modelCount     number of distinct models
+     * @param componentCount size of the component vocabulary
+     * @param colourSkew     Zipf exponent of the colour distribution, 0 for uniform
+     */
+    public CarsGenerator(final long carCount, final long seed, final int modelCount, final int componentCount,
+                         final double colourSkew)
+    {
+        if (carCount < 0 || modelCount < 1 || componentCount < 1 || colourSkew < 0)
+        {
+            throw new IllegalArgumentException("Invalid generator settings");
+        }
+
+        this.carCount = carCount;
+        this.random = new Random(seed);
+        this.models = names("MODEL ", modelCount);
+        this.components = names("COMPONENT ", componentCount);
+        this.modelDistribution = zipf(modelCount, 1.1);
+        this.componentDistribution = zipf(componentCount, 0.8);
+        this.colourDistribution = zipf(COLOURS.length, colourSkew);
+        this.modelBasePrices = new double[modelCount];
+
+        // model list prices are log-uniform between 8 000 and 250 000
+        for (int model = 0; model < modelCount; model++)
+        {
+            modelBasePrices[model] = 8_000 * Math.exp(random.nextDouble() * Math.log(250_000 / 8_000.0));
+        }
+    }
+
+    public CarsGenerator(final long carCount, final long seed)
+    {
+        this(carCount, seed, DEFAULT_MODEL_COUNT, DEFAULT_COMPONENT_COUNT, DEFAULT_COLOUR_SKEW);
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: CarsGenerator output-file car-count [seed] [model-count] [component-count] [colour-skew]");
+            return;
+        }
+
+        CarsGenerator generator = new CarsGenerator(
+                Long.parseLong(args[1]),
+                args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED,
+                args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MODEL_COUNT,
+                args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_COMPONENT_COUNT,
+                args.length > 5 ? Double.parseDouble(args[5]) : DEFAULT_COLOUR_SKEW);
+
+        long start = System.nanoTime();
+        generator.write(args[0]);
+
+        System.out.printf("%d cars written to %s in %d ms%n", generator.carCount, args[0],
+                          (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * It streams all remaining cars to the given file.
+     *
+     * @param jsonFileName output file name
+     */
+    public void write(final String jsonFileName)
+    {
+        new CarJsonConverter(jsonFileName).convert(this);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return generated < carCount;
+    }
+
+    @Override
+    public Car next()
+    {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        generated++;
+
+        int model = sample(modelDistribution);
+
+        // mileage is log-normal with a median around 60 000 km
+        int mileage = (int) Math.min(MAX_MILEAGE, Math.max(1, Math.round(60_000 * Math.exp(random.nextGaussian() * 0.9))));
+
+        // price spreads around the model list price and drops with mileage
+        double depreciation = Math.max(0.15, 1 - mileage / (double) (MAX_MILEAGE + 1) * 1.6);
+        double price = modelBasePrices[model] * depreciation * Math.exp(random.nextGaussian() * 0.2);
+
+        return Car.builder()
+                .model(models[model])
+                .price(BigDecimal.valueOf(Math.max(1, Math.round(price * 100)), 2))
+                .colour(COLOURS[sample(colourDistribution)])
+                .mileage(mileage)
+                .components(components())
+                .build();
+    }
+
+    private List<String> components()
+    {
+        int count = Math.min(components.length, 1 + random.nextInt(Math.min(8, components.length)));
+        List<String> carComponents = new ArrayList<>(count);
+
+        while (carComponents.size() < count)
+        {
+            String component = components[sample(componentDistribution)];
+
+            if (!carComponents.contains(component)) carComponents.add(component);
+        }
+
+        return carComponents;
+    }
+
+    private int sample(final double[] distribution)
+    {
+        int index = Arrays.binarySearch(distribution, random.nextDouble());
+
+        return Math.min(distribution.length - 1, index >= 0 ? index : -index - 1);
+    }
+
+    /**
+     * It returns the cumulative Zipf distribution of n items with the given exponent.
+     */
+    private static double[] zipf(final int n, final double exponent)
+    {
+        double[] cumulative = new double[n];
+        double sum = 0;
+
+        for (int i = 0; i < n; i++)
+        {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+
+        for (int i = 0; i < n; i++)
+        {
+            cumulative[i] /= sum;
+        }
+
+        return cumulative;
+    }
+
+    /**
+     * It returns n distinct names made of capital letters and spaces only, as
+     * required by the {@link Car.CarBuilder} validation: PREFIX A, ..., PREFIX Z, PREFIX AA, ...
+     */
+    private static String[] names(final String prefix, final int n)
+    {
+        String[] names = new String[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            StringBuilder name = new StringBuilder();
+
+            for (int value = i + 1; value > 0; value = (value - 1) / 26)
+            {
+                name.insert(0, (char) ('A' + (value - 1) % 26));
+            }
+
+            names[i] = prefix + name;
+        }
+
+        return names;
+    }
+}
@@ -0,0 +1,61 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.services.CarMetrics.Operation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Developed by Justyna Stachera on 26.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:52.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Overhead of the metrics on the hot path. {@code record} is the histogram
+ * update alone, {@code timed} adds the clock read done by every instrumented
+ * call and {@code clock} is the clock read alone. Run with {@code -t 4} to
+ * see the cost under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CarMetricsBenchmark
+{
+    private final CarMetrics metrics = new CarMetrics(() -> 0, () -> 0, () -> 0, () -> 0);
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @State(Scope.Thread)
+    public static class Latency
+    {
+        private long nanos = 1;
+
+        private long next()
+        {
+            // spreads the latencies over a few buckets like real calls do
+            nanos = nanos * 6364136223846793005L + 1442695040888963407L;
+
+            return 1000 + (nanos >>> 50);
+        }
+    }
+
+    @Benchmark
+    public void record(Latency latency)
+    {
+        histogram.record(latency.next());
+    }
+
+    @Benchmark
+    public void timed()
+    {
+        metrics.record(Operation.QUERY, System.nanoTime());
+    }
+
+    @Benchmark
+    public long clock()
+    {
+        return System.nanoTime();
+    }
+}
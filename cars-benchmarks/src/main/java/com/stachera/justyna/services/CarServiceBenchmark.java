@@ -0,0 +1,141 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.benchmarks.BenchmarkDatasets;
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.enums.Criterion;
+import com.stachera.justyna.models.models.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Developed by Justyna Stachera on 14.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:40.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Lives in the services package because {@link CarServiceImpl} is package private.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class CarServiceBenchmark
+{
+    private static final List<String> COMPONENTS = Arrays.asList("COMPONENT A", "COMPONENT B");
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int carCount;
+
+    // 0 measures the queries themselves, otherwise repeated queries are served by the result cache
+    @Param({"0", "256"})
+    private int resultCacheCapacity;
+
+    private CarServiceImpl carService;
+    private BigDecimal lowerPrice;
+    private BigDecimal upperPrice;
+    private Integer mileage;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        carService = new CarServiceImpl(BenchmarkDatasets.prepare(carCount),
+                                        e -> System.err.println("PERSISTENCE FAILED: " + e),
+                                        Runtime.getRuntime().availableProcessors(), resultCacheCapacity);
+        lowerPrice = new BigDecimal("1000");
+        upperPrice = new BigDecimal("1100");
+        mileage = 290_000;
+    }
+
+    @Benchmark
+    public Set<Car> getCars()
+    {
+        return carService.getCars();
+    }
+
+    @Benchmark
+    public List<Car> sortByPrice()
+    {
+        return carService.sort(Criterion.PRICE, true);
+    }
+
+    @Benchmark
+    public List<Car> sortByModel()
+    {
+        return carService.sort(Criterion.MODEL, false);
+    }
+
+    @Benchmark
+    public List<Car> sortFirstPage()
+    {
+        return carService.sort(Arrays.asList(SortKey.asc(Criterion.COLOUR), SortKey.desc(Criterion.MILEAGE)), 0, 50);
+    }
+
+    @Benchmark
+    public List<Car> getCarsIfMileageGt()
+    {
+        return carService.getCarsIfMileageGt(mileage);
+    }
+
+    @Benchmark
+    public Map<String, Car> getModelCarMap()
+    {
+        return carService.getModelCarMap();
+    }
+
+    @Benchmark
+    public String getStatistics()
+    {
+        return carService.getStatistics();
+    }
+
+    @Benchmark
+    public List<Car> getTheHighestPriceCars()
+    {
+        return carService.getTheHighestPriceCars();
+    }
+
+    @Benchmark
+    public Map<String, List<Car>> getComponentCarsMap()
+    {
+        return carService.getComponentCarsMap();
+    }
+
+    @Benchmark
+    public List<Car> getCarsWithAllComponents()
+    {
+        return carService.getCarsWithAllComponents(COMPONENTS);
+    }
+
+    @Benchmark
+    public List<Car> getCarsWithAnyComponents()
+    {
+        return carService.getCarsWithAnyComponents(Collections.singletonList("COMPONENT C"));
+    }
+
+    @Benchmark
+    public List<Car> getCarsPriceBetween()
+    {
+        return carService.getCarsPriceBetween(lowerPrice, upperPrice);
+    }
+
+    @Benchmark
+    public Map<Colour, Long> getCarAmountByColour()
+    {
+        return carService.getCarAmountByColour();
+    }
+
+    @Benchmark
+    public List<Car> sortCarComponents()
+    {
+        return carService.sortCarComponents();
+    }
+}
@@ -19,4 +19,15 @@ public class CustomException extends RuntimeException
     {
         return exceptionInfo;
     }
+
+    public ExceptionCode getExceptionCode()
+    {
+        return exceptionInfo.getExceptionCode();
+    }
+
+    @Override
+    public String getMessage()
+    {
+        return exceptionInfo.getExceptionCode().getDescription() + ": " + exceptionInfo.getExceptionMessage();
+    }
 }
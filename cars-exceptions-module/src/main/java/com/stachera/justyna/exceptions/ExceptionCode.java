@@ -3,12 +3,18 @@ package com.stachera.justyna.exceptions;
 /**
  * Developed by Justyna Stachera on 15.01.2019.
  * Package name: com.stachera.justyna.exceptions
- * Last modified 20:25.
+ * Last modified 19:42.
  * Copyright (c) 2019. All rights reserved.
  */
 public enum ExceptionCode
 {
-    CODE_250("FIELD VALIDATION");
+    CODE_250("FIELD VALIDATION"),
+    CODE_251("MODEL VALIDATION"),
+    CODE_252("PRICE VALIDATION"),
+    CODE_253("COLOUR VALIDATION"),
+    CODE_254("MILEAGE VALIDATION"),
+    CODE_255("COMPONENTS VALIDATION"),
+    CODE_256("MALFORMED RECORD");
     
     private String description;
     
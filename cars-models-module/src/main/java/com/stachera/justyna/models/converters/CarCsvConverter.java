@@ -0,0 +1,85 @@
+package com.stachera.justyna.models.converters;
+
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.models.Car;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+/**
+ * Developed by Justyna Stachera on 19.03.2019.
+ * Package name: com.stachera.justyna.models.converters
+ * Last modified 20:31.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Reader of CSV car feeds. Every line holds one car as
+ * model,price,colour,mileage,components where the components are separated
+ * with '|'. An optional header line equal to {@value #HEADER} is skipped.
+ */
+public class CarCsvConverter
+{
+    public static final String HEADER = "model,price,colour,mileage,components";
+
+    private static final int FIELD_COUNT = 5;
+
+    private final String csvFileName;
+
+    public CarCsvConverter(final String csvFileName)
+    {
+        this.csvFileName = csvFileName;
+    }
+
+    /**
+     * It streams every data line of the file to the consumer. Lines are not
+     * parsed, so the caller can parse them with {@link #parse(String)} on any thread.
+     *
+     * @param consumer line consumer
+     * @throws UncheckedIOException when the file cannot be read
+     */
+    public void convert(final Consumer<? super String> consumer)
+    {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(csvFileName), StandardCharsets.UTF_8))
+        {
+            String line = reader.readLine();
+
+            if (line != null && !line.trim().equalsIgnoreCase(HEADER) && !line.isBlank()) consumer.accept(line);
+
+            while ((line = reader.readLine()) != null)
+            {
+                if (!line.isBlank()) consumer.accept(line);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * It parses one data line. The values are not validated.
+     *
+     * @param line data line
+     * @return parsed {@link Car}
+     * @throws IllegalArgumentException when the line is malformed
+     */
+    public static Car parse(final String line)
+    {
+        String[] fields = line.split(",", -1);
+
+        if (fields.length != FIELD_COUNT) throw new IllegalArgumentException("MALFORMED LINE: " + line);
+
+        return new Car(fields[0].trim(),
+                       new BigDecimal(fields[1].trim()),
+                       Colour.valueOf(fields[2].trim()),
+                       Integer.valueOf(fields[3].trim()),
+                       fields[4].isBlank() ? Collections.emptyList() : Arrays.asList(fields[4].trim().split("\\s*\\|\\s*")));
+    }
+}
@@ -1,8 +1,13 @@
 package com.stachera.justyna.models.converters;
 
 import com.stachera.justyna.json.JsonConverter;
+import com.stachera.justyna.json.SymbolTable;
+import com.stachera.justyna.models.models.Car;
 import com.stachera.justyna.models.models.Cars;
 
+import java.util.Iterator;
+import java.util.function.Consumer;
+
 /**
  * Developed by Justyna Stachera on 15.01.2019.
  * Package name: com.stachera.justyna.json
@@ -11,8 +16,71 @@ import com.stachera.justyna.models.models.Cars;
  */
 public class CarJsonConverter extends JsonConverter<Cars>
 {
+    private static final String CARS_ARRAY_NAME = "cars";
+
+    /**
+     * It creates a converter interning models and components through its own {@link SymbolTable},
+     * so cars read by the converter share equal strings.
+     *
+     * @param jsonFileName JSON file name
+     */
     public CarJsonConverter(final String jsonFileName)
     {
-        super(jsonFileName);
+        this(jsonFileName, new SymbolTable());
+    }
+
+    /**
+     * @param jsonFileName JSON file name
+     * @param symbolTable  table interning models and components, null to disable interning
+     */
+    public CarJsonConverter(final String jsonFileName, final SymbolTable symbolTable)
+    {
+        super(jsonFileName, symbolTable);
+    }
+
+    /**
+     * It streams the cars array and passes every {@link Car} to the consumer
+     * as soon as it is parsed. A malformed car or a reading error is thrown,
+     * after the cars before it have been passed to the consumer.
+     *
+     * @param consumer {@link Car} consumer
+     */
+    public void convert(final Consumer<? super Car> consumer)
+    {
+        convert(CARS_ARRAY_NAME, Car.class, consumer);
+    }
+
+    /**
+     * It streams the cars array and passes every car as compact JSON text, so
+     * a malformed car can be rejected alone while the following cars are read.
+     *
+     * @param consumer car text consumer
+     * @throws java.io.UncheckedIOException when the file cannot be read or is not valid JSON
+     */
+    public void convertElements(final Consumer<? super String> consumer)
+    {
+        convertElements(CARS_ARRAY_NAME, consumer);
+    }
+
+    /**
+     * It parses the cars array on the given number of threads and passes every
+     * {@link Car} to the consumer in file order, on the calling thread.
+     *
+     * @param consumer    {@link Car} consumer
+     * @param parallelism number of parsing threads, 1 for the sequential read
+     */
+    public void convert(final Consumer<? super Car> consumer, final int parallelism)
+    {
+        convert(CARS_ARRAY_NAME, Car.class, consumer, parallelism);
+    }
+
+    /**
+     * It writes the cars one by one as the cars array of the file.
+     *
+     * @param cars {@link Car} iterator
+     */
+    public void convert(final Iterator<? extends Car> cars)
+    {
+        convert(CARS_ARRAY_NAME, Car.class, cars);
     }
 }
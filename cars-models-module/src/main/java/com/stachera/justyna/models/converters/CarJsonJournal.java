@@ -0,0 +1,18 @@
+package com.stachera.justyna.models.converters;
+
+import com.stachera.justyna.json.JsonJournal;
+import com.stachera.justyna.models.models.Car;
+
+/**
+ * Developed by Justyna Stachera on 02.03.2019.
+ * Package name: com.stachera.justyna.models.converters
+ * Last modified 18:52.
+ * Copyright (c) 2019. All rights reserved.
+ */
+public class CarJsonJournal extends JsonJournal<Car>
+{
+    public CarJsonJournal(final String jsonFileName)
+    {
+        super(jsonFileName);
+    }
+}
@@ -1,56 +1,134 @@
 package com.stachera.justyna.models.models;
 
+import com.stachera.justyna.exceptions.CustomException;
+import com.stachera.justyna.exceptions.ExceptionCode;
+import com.stachera.justyna.json.JsonResolvable;
+import com.stachera.justyna.json.SymbolTable;
 import com.stachera.justyna.models.enums.Colour;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.UnaryOperator;
 
 /**
  * Developed by Justyna Stachera on 15.01.2019.
  * Package name: com.stachera.justyna.models
  * Last modified 20:09.
  * Copyright (c) 2019. All rights reserved.
+ *
+ * Immutable car value. The hash code is computed once, so cars are cheap to
+ * keep in hash based collections.
+ *
+ * The price is normalized to {@value #PRICE_SCALE} decimal places and kept
+ * as a long in minor units as well, so {@code 120} and {@code 120.00} are the
+ * same price and prices compare as primitives. A price which cannot be
+ * represented that way is kept as given and rejected by {@link CarValidator}.
  */
-public class Car
+public final class Car implements JsonResolvable<Car>
 {
-    private String model;
-    private BigDecimal price;
-    private Colour colour;
-    private Integer mileage;
-    private List<String> components;
+    public static final int PRICE_SCALE = 2;
+    /**
+     * Minor units of a missing price or a price with more than {@value #PRICE_SCALE} decimal places.
+     */
+    public static final long NO_PRICE = Long.MIN_VALUE;
+    /**
+     * Number of digits before the decimal point a price may have, so that its minor units fit a long.
+     */
+    public static final int PRICE_INTEGER_DIGITS = 16;
 
-    public Car()
+    private final String model;
+    // the decimal price is what the JSON files hold, the minor units are what is compared
+    private final BigDecimal price;
+    private final transient long priceInMinorUnits;
+    private final Colour colour;
+    private final Integer mileage;
+    private final List<String> components;
+    private final transient int hash;
+
+    // used by Gson only, the instance read is replaced through resolve()
+    private Car()
     {
+        this(null, null, null, null, null);
     }
 
-    private Car(CarBuilder carBuilder)
+    /**
+     * It creates a car without validating the values, use {@link #builder()}
+     * for validation. The components are copied and kept sorted, so two cars
+     * with the same components in a different order are equal.
+     *
+     * @param model      model name
+     * @param price      price
+     * @param colour     colour
+     * @param mileage    mileage
+     * @param components components
+     */
+    public Car(String model, BigDecimal price, Colour colour, Integer mileage, Collection<String> components)
     {
-        this.model = carBuilder.model;
-        this.colour = carBuilder.colour;
-        this.components = carBuilder.components;
-        this.mileage = carBuilder.mileage;
-        this.price = carBuilder.price;
+        this(model, price, toMinorUnits(price), colour, mileage, canonical(components, UnaryOperator.identity()));
     }
 
-    public String getModel()
+    /**
+     * It creates a car with the price given in minor units without validating the values.
+     *
+     * @param model             model name
+     * @param priceInMinorUnits price in minor units, e.g. 12050 for 120.50
+     * @param colour            colour
+     * @param mileage           mileage
+     * @param components        components
+     */
+    public Car(String model, long priceInMinorUnits, Colour colour, Integer mileage, Collection<String> components)
     {
-        return model;
+        this(model, null, priceInMinorUnits, colour, mileage, canonical(components, UnaryOperator.identity()));
     }
 
-    public void setModel(String model)
+    /**
+     * @param components canonical components, see {@link #canonical(Collection, UnaryOperator)}
+     */
+    private Car(String model, BigDecimal price, long priceInMinorUnits, Colour colour, Integer mileage,
+                List<String> components)
     {
         this.model = model;
+        this.price = priceInMinorUnits == NO_PRICE ? price : fromMinorUnits(priceInMinorUnits);
+        this.priceInMinorUnits = priceInMinorUnits;
+        this.colour = colour;
+        this.mileage = mileage;
+        this.components = components;
+        this.hash = Objects.hash(model, this.price, colour, mileage, this.components);
+    }
+
+    private Car(CarBuilder carBuilder)
+    {
+        this(carBuilder.model, carBuilder.price, carBuilder.colour, carBuilder.mileage, carBuilder.components);
+    }
+
+    public String getModel()
+    {
+        return model;
     }
 
+    /**
+     * It returns the price with {@value #PRICE_SCALE} decimal places.
+     *
+     * @return price
+     */
     public BigDecimal getPrice()
     {
         return price;
     }
 
-    public void setPrice(BigDecimal price)
+    /**
+     * It returns the price in minor units, e.g. 12050 for 120.50.
+     *
+     * @return price in minor units or {@link #NO_PRICE}
+     */
+    public long getPriceInMinorUnits()
     {
-        this.price = price;
+        return priceInMinorUnits;
     }
 
     public Colour getColour()
@@ -58,34 +136,44 @@ public class Car
         return colour;
     }
 
-    public void setColour(Colour colour)
-    {
-        this.colour = colour;
-    }
-
     public Integer getMileage()
     {
         return mileage;
     }
 
-    public void setMileage(Integer mileage)
+    /**
+     * It returns the unmodifiable, sorted list of components.
+     *
+     * @return components
+     */
+    public List<String> getComponents()
     {
-        this.mileage = mileage;
+        return components;
     }
 
-    public List<String> getComponents()
+    public static CarBuilder builder()
     {
-        return components;
+        return new CarBuilder();
     }
 
-    public void setComponents(List<String> components)
+    @Override
+    public Car resolve()
     {
-        this.components = components;
+        return new Car(model, price, colour, mileage, components);
     }
 
-    public static CarBuilder builder()
+    /**
+     * It returns the car with the model and the components interned in the
+     * table, so cars loaded together share equal strings.
+     *
+     * @param symbolTable table of canonical strings
+     * @return resolved car
+     */
+    @Override
+    public Car resolve(final SymbolTable symbolTable)
     {
-        return new CarBuilder();
+        return new Car(symbolTable.intern(model), price, toMinorUnits(price), colour, mileage,
+                       canonical(components, symbolTable::intern));
     }
 
     @Override
@@ -106,19 +194,69 @@ public class Car
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Car car = (Car) o;
-        return Objects.equals(model, car.model) &&
-                Objects.equals(price, car.price) &&
-                colour == car.colour &&
+        return hash == car.hash &&
+                priceInMinorUnits == car.priceInMinorUnits &&
                 Objects.equals(mileage, car.mileage) &&
+                colour == car.colour &&
+                Objects.equals(model, car.model) &&
+                Objects.equals(price, car.price) &&
                 Objects.equals(components, car.components);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(model, price, colour, mileage, components);
+        return hash;
+    }
+
+    /**
+     * It converts the price into minor units.
+     *
+     * @param price price
+     * @return price in minor units or {@link #NO_PRICE} when the price is missing, has more than
+     * {@value #PRICE_SCALE} significant decimal places or more than {@value #PRICE_INTEGER_DIGITS} digits
+     */
+    public static long toMinorUnits(final BigDecimal price)
+    {
+        if (price == null || price.precision() - price.scale() > PRICE_INTEGER_DIGITS) return NO_PRICE;
+
+        try
+        {
+            return price.setScale(PRICE_SCALE).unscaledValue().longValue();
+        }
+        catch (ArithmeticException e)
+        {
+            return NO_PRICE;
+        }
+    }
+
+    public static BigDecimal fromMinorUnits(final long priceInMinorUnits)
+    {
+        return BigDecimal.valueOf(priceInMinorUnits, PRICE_SCALE);
     }
 
+    /**
+     * It copies the components into an unmodifiable sorted list, passing every
+     * component through the interner on the way.
+     */
+    private static List<String> canonical(final Collection<String> components, final UnaryOperator<String> interner)
+    {
+        if (components == null) return null;
+
+        String[] sorted = components.toArray(new String[0]);
+
+        for (int i = 0; i < sorted.length; i++) sorted[i] = interner.apply(sorted[i]);
+
+        Arrays.sort(sorted, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        return Collections.unmodifiableList(Arrays.asList(sorted));
+    }
+
+    /**
+     * Builder validating every value with the {@link CarValidator} rules.
+     * An invalid value is rejected with a {@link CustomException} carrying
+     * the code of the violated rule.
+     */
     public static class CarBuilder
     {
         private String model;
@@ -129,26 +267,26 @@ public class Car
         
         public CarBuilder model(String model)
         {
-            if (model != null && model.matches("^[A-Z\\s]+$"))
-            { this.model = model; }
-            else
-            { System.err.println("MODEL VALIDATION"); }
-            
+            if (!CarValidator.isModel(model)) throw new CustomException(ExceptionCode.CODE_251, String.valueOf(model));
+
+            this.model = model;
+
             return this;
         }
         
         public CarBuilder price(BigDecimal price)
         {
-            if (price != null && price.doubleValue() > 0)
-            { this.price = price; }
-            else
-            { System.err.println("PRICE VALIDATION"); }
+            if (!CarValidator.isPrice(price)) throw new CustomException(ExceptionCode.CODE_252, String.valueOf(price));
+
+            this.price = price;
     
             return this;
         }
         
         public CarBuilder colour(Colour colour)
         {
+            if (!CarValidator.isColour(colour)) throw new CustomException(ExceptionCode.CODE_253, "null");
+
             this.colour = colour;
     
             return this;
@@ -156,26 +294,35 @@ public class Car
         
         public CarBuilder mileage(Integer mileage)
         {
-            if (mileage != null && mileage > 0)
-            { this.mileage = mileage; }
-            else
-            { System.err.println("MILEAGE VALIDATION"); }
+            if (!CarValidator.isMileage(mileage)) throw new CustomException(ExceptionCode.CODE_254, String.valueOf(mileage));
+
+            this.mileage = mileage;
     
             return this;
         }
         
         public CarBuilder components(List<String> components)
         {
-            if (components.stream().allMatch(p -> p.matches("^[A-Z\\s]+$")))
-            { this.components = components; }
-            else
-            { System.err.println("COMPONENTS VALIDATION"); }
+            if (!CarValidator.isComponents(components))
+            {
+                throw new CustomException(ExceptionCode.CODE_255, String.valueOf(components));
+            }
+
+            this.components = components;
     
             return this;
         }
-        
+
+        /**
+         * @throws CustomException when a value has not been set
+         */
         public Car build()
         {
+            if (model == null || price == null || colour == null || mileage == null || components == null)
+            {
+                throw new CustomException(ExceptionCode.CODE_250, "MISSING FIELD");
+            }
+
             return new Car(this);
         }
     }
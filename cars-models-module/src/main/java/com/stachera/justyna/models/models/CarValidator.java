@@ -0,0 +1,154 @@
+package com.stachera.justyna.models.models;
+
+import com.stachera.justyna.exceptions.CustomException;
+import com.stachera.justyna.exceptions.ExceptionCode;
+import com.stachera.justyna.models.enums.Colour;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Developed by Justyna Stachera on 23.03.2019.
+ * Package name: com.stachera.justyna.models.models
+ * Last modified 18:27.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Validation rules of {@link Car} values. The checks scan the characters
+ * directly and check prices by signum and digit counts, so validating a
+ * valid car allocates nothing; a rule violation is reported as an
+ * {@link ExceptionCode} and only {@link #check(Car)} creates an exception for it.
+ */
+public final class CarValidator
+{
+    private CarValidator()
+    {
+    }
+
+    /**
+     * It returns the code of the first rule the car violates.
+     *
+     * @param car car to validate
+     * @return violated rule or null for a valid car
+     */
+    public static ExceptionCode validate(final Car car)
+    {
+        if (car == null) return ExceptionCode.CODE_256;
+
+        return validate(car.getModel(), car.getPrice(), car.getColour(), car.getMileage(), car.getComponents());
+    }
+
+    /**
+     * It returns the code of the first rule the values violate.
+     *
+     * @return violated rule or null for valid values
+     */
+    public static ExceptionCode validate(final String model, final BigDecimal price, final Colour colour,
+                                         final Integer mileage, final Collection<String> components)
+    {
+        if (!isModel(model)) return ExceptionCode.CODE_251;
+        if (!isPrice(price)) return ExceptionCode.CODE_252;
+        if (!isColour(colour)) return ExceptionCode.CODE_253;
+        if (!isMileage(mileage)) return ExceptionCode.CODE_254;
+        if (!isComponents(components)) return ExceptionCode.CODE_255;
+
+        return null;
+    }
+
+    /**
+     * It throws a {@link CustomException} with the first rule the car violates.
+     *
+     * @param car car to validate
+     * @return the valid car
+     */
+    public static Car check(final Car car)
+    {
+        ExceptionCode code = validate(car);
+
+        if (code != null) throw new CustomException(code, String.valueOf(car));
+
+        return car;
+    }
+
+    /**
+     * It returns true for a non empty name made of capital letters A-Z and whitespaces.
+     */
+    public static boolean isModel(final String model)
+    {
+        return isName(model);
+    }
+
+    /**
+     * It returns true for a positive price which has at most {@value Car#PRICE_SCALE} significant
+     * decimal places and at most {@value Car#PRICE_INTEGER_DIGITS} digits before the decimal point.
+     */
+    public static boolean isPrice(final BigDecimal price)
+    {
+        if (price == null || price.signum() <= 0) return false;
+
+        // only prices written with more decimal places than the car keeps need trailing zeros stripped
+        BigDecimal significant = price.scale() <= Car.PRICE_SCALE ? price : price.stripTrailingZeros();
+
+        return significant.scale() <= Car.PRICE_SCALE &&
+               significant.precision() - significant.scale() <= Car.PRICE_INTEGER_DIGITS;
+    }
+
+    public static boolean isColour(final Colour colour)
+    {
+        return colour != null;
+    }
+
+    public static boolean isMileage(final Integer mileage)
+    {
+        return mileage != null && mileage > 0;
+    }
+
+    /**
+     * It returns true for a collection which every component is a valid name.
+     */
+    public static boolean isComponents(final Collection<String> components)
+    {
+        if (components == null) return false;
+
+        // indexed access avoids the iterator of the lists cars keep
+        if (components instanceof List && components instanceof RandomAccess)
+        {
+            List<String> list = (List<String>) components;
+
+            for (int i = 0; i < list.size(); i++)
+            {
+                if (!isName(list.get(i))) return false;
+            }
+
+            return true;
+        }
+
+        for (String component : components)
+        {
+            if (!isName(component)) return false;
+        }
+
+        return true;
+    }
+
+    private static boolean isName(final String name)
+    {
+        if (name == null || name.isEmpty()) return false;
+
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+
+            if ((c < 'A' || c > 'Z') && !isWhitespace(c)) return false;
+        }
+
+        return true;
+    }
+
+    // the characters of the \s regex class
+    private static boolean isWhitespace(final char c)
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -1,10 +1,13 @@
 package com.stachera.justyna.models.models;
 
 import com.stachera.justyna.models.converters.CarJsonConverter;
+import com.stachera.justyna.models.converters.CarJsonJournal;
 
 import java.io.File;
+import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 
@@ -29,7 +32,39 @@ public class Cars
 
     public Cars(final String filePath)
     {
-        cars = new CarJsonConverter(prepareFilePath(filePath)).convert().getCars();
+        cars = new LinkedHashSet<>();
+        load(filePath, cars::add);
+    }
+
+    /**
+     * It streams every {@link Car} of the snapshot file followed by the cars
+     * of its journal to the consumer, without collecting them. A malformed
+     * or unreadable snapshot file is thrown, so a partial load is never
+     * mistaken for the whole file.
+     *
+     * @param filePath project relative file path
+     * @param consumer {@link Car} consumer
+     */
+    public static void load(final String filePath, final Consumer<? super Car> consumer)
+    {
+        load(filePath, consumer, 1);
+    }
+
+    /**
+     * It loads the cars like {@link #load(String, Consumer)}, parsing the
+     * snapshot file on the given number of threads. The consumer is called on
+     * the calling thread and receives the cars in the same order.
+     *
+     * @param filePath    project relative file path
+     * @param consumer    {@link Car} consumer
+     * @param parallelism number of parsing threads
+     */
+    public static void load(final String filePath, final Consumer<? super Car> consumer, final int parallelism)
+    {
+        final String jsonFileName = prepareFilePath(filePath);
+
+        new CarJsonConverter(jsonFileName).convert(consumer, parallelism);
+        new CarJsonJournal(jsonFileName).replay(consumer);
     }
 
     public Set<Car> getCars()
@@ -63,7 +98,13 @@ public class Cars
         return Objects.hash(cars);
     }
 
-    private String prepareFilePath(final String filePath)
+    /**
+     * It resolves a project relative file path against the working directory.
+     *
+     * @param filePath project relative file path
+     * @return absolute file path
+     */
+    public static String prepareFilePath(final String filePath)
     {
         return new File("")
                 .getAbsolutePath()
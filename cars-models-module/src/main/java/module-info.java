@@ -5,6 +5,7 @@
  * Copyright (c) 2019. All rights reserved.
  */module cars.model.module {
      requires gson.module;
+     requires transitive cars.exception.module;
 
      exports com.stachera.justyna.models.models;
      exports com.stachera.justyna.models.enums;
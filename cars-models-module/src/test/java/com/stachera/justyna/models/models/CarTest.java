@@ -0,0 +1,121 @@
+package com.stachera.justyna.models.models;
+
+import com.stachera.justyna.exceptions.CustomException;
+import com.stachera.justyna.exceptions.ExceptionCode;
+import com.stachera.justyna.json.SymbolTable;
+import com.stachera.justyna.models.enums.Colour;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Developed by Justyna Stachera on 15.01.2019.
+ * Package name: com.stachera.justyna.models.models
+ * Last modified 20:31.
+ * Copyright (c) 2019. All rights reserved.
+ */
+public class CarTest
+{
+    @Test
+    public void keepsSortedCopyOfComponents()
+    {
+        List<String> components = new ArrayList<>(Arrays.asList("BLUETOOTH", "ABS"));
+        Car car = car(new BigDecimal("120"), components);
+
+        components.add("ESP");
+
+        assertEquals(Arrays.asList("ABS", "BLUETOOTH"), car.getComponents());
+
+        try
+        {
+            car.getComponents().add("ESP");
+            fail("components modified");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            assertEquals(Arrays.asList("ABS", "BLUETOOTH"), car.getComponents());
+        }
+    }
+
+    @Test
+    public void carsWithComponentsInAnotherOrderAreEqual()
+    {
+        Car car = car(new BigDecimal("120"), Arrays.asList("ABS", "BLUETOOTH"));
+        Car reordered = car(new BigDecimal("120"), Arrays.asList("BLUETOOTH", "ABS"));
+
+        assertEquals(car, reordered);
+        assertEquals(car.hashCode(), reordered.hashCode());
+    }
+
+    @Test
+    public void normalizesPriceToMinorUnits()
+    {
+        Car car = car(new BigDecimal("120"), Arrays.asList("ABS"));
+
+        assertEquals(new BigDecimal("120.00"), car.getPrice());
+        assertEquals(12000L, car.getPriceInMinorUnits());
+        assertEquals(car, car(new BigDecimal("120.000"), Arrays.asList("ABS")));
+        assertEquals(car, new Car("BMW", 12000L, Colour.A1, 1500, Arrays.asList("ABS")));
+        assertNotEquals(car, car(new BigDecimal("120.01"), Arrays.asList("ABS")));
+    }
+
+    @Test
+    public void keepsPriceWhichCannotBeNormalized()
+    {
+        Car car = car(new BigDecimal("120.005"), Arrays.asList("ABS"));
+
+        assertEquals(Car.NO_PRICE, car.getPriceInMinorUnits());
+        assertEquals(new BigDecimal("120.005"), car.getPrice());
+        assertEquals(ExceptionCode.CODE_252, CarValidator.validate(car));
+    }
+
+    @Test
+    public void cachesHashCodeOfTheValues()
+    {
+        Car car = car(new BigDecimal("99.90"), Arrays.asList("ESP", "ABS"));
+
+        assertEquals(car.hashCode(), car.hashCode());
+        assertEquals(car.hashCode(), car.resolve().hashCode());
+        assertNotEquals(car, new Car("BMW", new BigDecimal("99.90"), Colour.A1, 1501, Arrays.asList("ESP", "ABS")));
+        assertNotEquals(car, new Car("BMW", new BigDecimal("99.90"), Colour.A2, 1500, Arrays.asList("ESP", "ABS")));
+    }
+
+    @Test
+    public void internsModelAndComponentsWhenResolved()
+    {
+        SymbolTable symbolTable = new SymbolTable();
+        Car first = new Car(new String("BMW"), 100L, Colour.A1, 1, Arrays.asList(new String("ABS"))).resolve(symbolTable);
+        Car second = new Car(new String("BMW"), 200L, Colour.A2, 2, Arrays.asList(new String("ABS"))).resolve(symbolTable);
+
+        assertSame(first.getModel(), second.getModel());
+        assertSame(first.getComponents().get(0), second.getComponents().get(0));
+        assertEquals(2, symbolTable.size());
+    }
+
+    @Test
+    public void builderRejectsInvalidValue()
+    {
+        try
+        {
+            Car.builder().model("BMW").price(new BigDecimal("-1"));
+            fail("negative price accepted");
+        }
+        catch (CustomException e)
+        {
+            assertEquals(ExceptionCode.CODE_252, e.getExceptionCode());
+        }
+    }
+
+    private static Car car(final BigDecimal price, final List<String> components)
+    {
+        return new Car("BMW", price, Colour.A1, 1500, components);
+    }
+}
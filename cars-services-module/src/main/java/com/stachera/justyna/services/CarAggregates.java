@@ -0,0 +1,324 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Developed by Justyna Stachera on 10.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 18:12.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Aggregates of the stored cars updated with every added row, so statistics,
+ * colour counts and the most expensive car per model are read without
+ * touching the rows. The most expensive car per model is kept in segments of
+ * {@value #SEGMENT_SIZE} models shared with snapshots and copied before they
+ * first change after a snapshot, so a snapshot costs no copy of all models.
+ */
+class CarAggregates
+{
+    private static final int SEGMENT_SHIFT = 6;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private int count;
+    private int mileageMin = Integer.MAX_VALUE;
+    private int mileageMax = Integer.MIN_VALUE;
+    private long mileageSum;
+    private long priceMin = Long.MAX_VALUE;
+    private long priceMax = Long.MIN_VALUE;
+    private long priceSum;
+    private BigInteger priceSumOverflow = BigInteger.ZERO;
+
+    private final long[] colourCounts = new long[Colour.values().length];
+
+    private int[][] modelMaxRows = new int[0][];
+    private long[][] modelMaxPrices = new long[0][];
+    private int[] segmentGenerations = new int[0];
+    private int generation;
+
+    CarAggregates()
+    {
+    }
+
+    private CarAggregates(final CarAggregates aggregates)
+    {
+        this.count = aggregates.count;
+        this.mileageMin = aggregates.mileageMin;
+        this.mileageMax = aggregates.mileageMax;
+        this.mileageSum = aggregates.mileageSum;
+        this.priceMin = aggregates.priceMin;
+        this.priceMax = aggregates.priceMax;
+        this.priceSum = aggregates.priceSum;
+        this.priceSumOverflow = aggregates.priceSumOverflow;
+        System.arraycopy(aggregates.colourCounts, 0, colourCounts, 0, colourCounts.length);
+        this.modelMaxRows = aggregates.modelMaxRows.clone();
+        this.modelMaxPrices = aggregates.modelMaxPrices.clone();
+    }
+
+    /**
+     * It updates the aggregates with a new row.
+     *
+     * @param row     row number
+     * @param model   model id
+     * @param price   fixed-point price
+     * @param mileage mileage
+     * @param colour  colour ordinal
+     */
+    void add(final int row, final int model, final long price, final int mileage, final int colour)
+    {
+        count++;
+        mileageMin = Math.min(mileageMin, mileage);
+        mileageMax = Math.max(mileageMax, mileage);
+        mileageSum += mileage;
+        priceMin = Math.min(priceMin, price);
+        priceMax = Math.max(priceMax, price);
+
+        try
+        {
+            priceSum = Math.addExact(priceSum, price);
+        }
+        catch (ArithmeticException e)
+        {
+            priceSumOverflow = priceSumOverflow.add(BigInteger.valueOf(priceSum));
+            priceSum = price;
+        }
+
+        colourCounts[colour]++;
+
+        int segment = model >>> SEGMENT_SHIFT;
+        int index = model & SEGMENT_MASK;
+
+        if (segment >= modelMaxRows.length)
+        {
+            int capacity = Math.max(segment + 1, modelMaxRows.length * 2);
+
+            modelMaxRows = Arrays.copyOf(modelMaxRows, capacity);
+            modelMaxPrices = Arrays.copyOf(modelMaxPrices, capacity);
+            segmentGenerations = Arrays.copyOf(segmentGenerations, capacity);
+        }
+
+        int[] rows = modelMaxRows[segment];
+        long[] prices = modelMaxPrices[segment];
+
+        if (rows != null && rows[index] >= 0 && price <= prices[index]) return;
+
+        if (rows == null)
+        {
+            rows = modelMaxRows[segment] = new int[SEGMENT_SIZE];
+            prices = modelMaxPrices[segment] = new long[SEGMENT_SIZE];
+            Arrays.fill(rows, -1);
+            segmentGenerations[segment] = generation;
+        }
+        else if (segmentGenerations[segment] != generation)
+        {
+            // the segment is shared with a snapshot
+            rows = modelMaxRows[segment] = rows.clone();
+            prices = modelMaxPrices[segment] = prices.clone();
+            segmentGenerations[segment] = generation;
+        }
+
+        rows[index] = row;
+        prices[index] = price;
+    }
+
+    /**
+     * It returns a view of the aggregates that is not affected by later rows.
+     * The model segments are shared with the view.
+     *
+     * @return aggregates view
+     */
+    CarAggregates snapshot()
+    {
+        generation++;
+
+        return new CarAggregates(this);
+    }
+
+    int getCount()
+    {
+        return count;
+    }
+
+    int getMileageMin()
+    {
+        return count == 0 ? 0 : mileageMin;
+    }
+
+    int getMileageMax()
+    {
+        return count == 0 ? 0 : mileageMax;
+    }
+
+    double getMileageAverage()
+    {
+        return count == 0 ? 0 : (double) mileageSum / count;
+    }
+
+    long getPriceMin()
+    {
+        return count == 0 ? 0 : priceMin;
+    }
+
+    long getPriceMax()
+    {
+        return count == 0 ? 0 : priceMax;
+    }
+
+    /**
+     * It returns the exact sum of all prices.
+     *
+     * @return price sum
+     */
+    BigDecimal getPriceSum()
+    {
+        return new BigDecimal(priceSumOverflow.add(BigInteger.valueOf(priceSum)), CarStore.PRICE_SCALE);
+    }
+
+    /**
+     * It returns the average price rounded half up to minor units. The average
+     * is divided in longs unless the price sum has overflowed.
+     *
+     * @return average price
+     */
+    BigDecimal getPriceAverage()
+    {
+        if (count == 0) return BigDecimal.ZERO;
+
+        if (priceSumOverflow.signum() != 0 || priceSum < 0)
+        {
+            return getPriceSum().divide(new BigDecimal(count), RoundingMode.HALF_UP);
+        }
+
+        long average = priceSum / count;
+
+        if (priceSum % count * 2 >= count) average++;
+
+        return CarStore.fromFixedPoint(average);
+    }
+
+    long getColourCount(final Colour colour)
+    {
+        return colourCounts[colour.ordinal()];
+    }
+
+    /**
+     * It returns the mileage and price statistics as shown to the user.
+     *
+     * @return statistics description
+     */
+    String getStatistics()
+    {
+        String mileageStatisticsStr = MessageFormat
+                .format("MileageStatistics[min={0}, max={1}, average={2}]", getMileageMin(), getMileageMax(),
+                        getMileageAverage());
+        String priceStatisticsStr = MessageFormat
+                .format("PriceStatistics[min={0}, max={1}, average={2}]", CarStore.fromFixedPoint(getPriceMin()),
+                        CarStore.fromFixedPoint(getPriceMax()), getPriceAverage());
+
+        return mileageStatisticsStr + "\n" + priceStatisticsStr;
+    }
+
+    /**
+     * It returns the unmodifiable colour - car count map of the colours having cars,
+     * from the last colour to the first one.
+     *
+     * @return colour - car count map
+     */
+    Map<Colour, Long> getColourCounts()
+    {
+        Colour[] colours = Colour.values();
+        Map<Colour, Long> carAmountByColour = new LinkedHashMap<>();
+
+        for (int colour = colours.length - 1; colour >= 0; colour--)
+        {
+            if (colourCounts[colour] > 0) carAmountByColour.put(colours[colour], colourCounts[colour]);
+        }
+
+        return Collections.unmodifiableMap(carAmountByColour);
+    }
+
+    /**
+     * It sums up the aggregates of separate stores, e.g. of partitions. The
+     * rows of the most expensive cars belong to their stores, so the model
+     * maxima are not merged and the result has none.
+     *
+     * @param parts aggregates to merge
+     * @return merged aggregates
+     */
+    static CarAggregates merge(final Collection<CarAggregates> parts)
+    {
+        CarAggregates merged = new CarAggregates();
+
+        for (CarAggregates part : parts)
+        {
+            if (part.count == 0) continue;
+
+            merged.count += part.count;
+            merged.mileageMin = Math.min(merged.mileageMin, part.mileageMin);
+            merged.mileageMax = Math.max(merged.mileageMax, part.mileageMax);
+            merged.mileageSum += part.mileageSum;
+            merged.priceMin = Math.min(merged.priceMin, part.priceMin);
+            merged.priceMax = Math.max(merged.priceMax, part.priceMax);
+            merged.priceSumOverflow = merged.priceSumOverflow.add(part.priceSumOverflow);
+
+            try
+            {
+                merged.priceSum = Math.addExact(merged.priceSum, part.priceSum);
+            }
+            catch (ArithmeticException e)
+            {
+                merged.priceSumOverflow = merged.priceSumOverflow.add(BigInteger.valueOf(merged.priceSum));
+                merged.priceSum = part.priceSum;
+            }
+
+            for (int colour = 0; colour < merged.colourCounts.length; colour++)
+            {
+                merged.colourCounts[colour] += part.colourCounts[colour];
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * It returns model name - row of the most expensive car of the model map,
+     * sorted descending by model name.
+     *
+     * @param modelNames model name of every model id
+     * @return model name - row map
+     */
+    Map<String, Integer> getModelMaxRows(final IntFunction<String> modelNames)
+    {
+        Map<String, Integer> rows = new TreeMap<>(Comparator.reverseOrder());
+
+        for (int segment = 0; segment < modelMaxRows.length; segment++)
+        {
+            int[] segmentRows = modelMaxRows[segment];
+
+            if (segmentRows == null) continue;
+
+            for (int index = 0; index < SEGMENT_SIZE; index++)
+            {
+                if (segmentRows[index] >= 0)
+                {
+                    rows.put(modelNames.apply((segment << SEGMENT_SHIFT) | index), segmentRows[index]);
+                }
+            }
+        }
+
+        return new LinkedHashMap<>(rows);
+    }
+}
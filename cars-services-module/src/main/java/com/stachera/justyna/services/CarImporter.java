@@ -0,0 +1,335 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.exceptions.ExceptionCode;
+import com.stachera.justyna.json.JsonMapper;
+import com.stachera.justyna.models.converters.CarCsvConverter;
+import com.stachera.justyna.models.converters.CarJsonConverter;
+import com.stachera.justyna.models.models.Car;
+import com.stachera.justyna.models.models.CarValidator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Developed by Justyna Stachera on 19.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 19:55.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Bulk import of JSON or CSV car feeds. Records are read in batches of
+ * {@value #BATCH_SIZE}, every batch is parsed and checked with the
+ * {@link CarValidator} rules in parallel and then added to the service as
+ * one group commit. Rejected records are counted by {@link ExceptionCode} and
+ * quarantined, one per line, in the feed file name + {@value #QUARANTINE_SUFFIX}.
+ * JSON feeds are read element by element as text, so a car that does not map
+ * is rejected alone. A feed that cannot be read further, e.g. broken JSON
+ * syntax, stops the import after the records read so far; the failure is
+ * counted and quarantined as a malformed record and the report is not complete.
+ * The journal is compacted once, after the last batch, and the import is
+ * reported as finished only when everything is on disk.
+ */
+class CarImporter
+{
+    static final int BATCH_SIZE = 10_000;
+    static final String QUARANTINE_SUFFIX = ".rejected";
+
+    private final CarService carService;
+
+    CarImporter(final CarService carService)
+    {
+        this.carService = carService;
+    }
+
+    /**
+     * It imports the feed, choosing the format by the file extension.
+     *
+     * @param feedFileName JSON or CSV (.csv) feed file name
+     * @return import report
+     */
+    Report importFeed(final String feedFileName)
+    {
+        Path quarantine = Paths.get(feedFileName + QUARANTINE_SUFFIX);
+
+        if (feedFileName.toLowerCase().endsWith(".csv"))
+        {
+            return importRecords(new CarCsvConverter(feedFileName)::convert, CarCsvConverter::parse,
+                                 Function.identity(), quarantine);
+        }
+
+        JsonMapper jsonMapper = new JsonMapper();
+
+        return importRecords(new CarJsonConverter(feedFileName)::convertElements,
+                             text -> jsonMapper.read(new StringReader(text), Car.class), Function.identity(),
+                             quarantine);
+    }
+
+    private <R> Report importRecords(final Consumer<Consumer<R>> source, final Function<R, Car> parser,
+                                     final Function<R, String> formatter, final Path quarantineFile)
+    {
+        Report report = new Report(quarantineFile);
+        List<R> batch = new ArrayList<>(BATCH_SIZE);
+        long start = System.nanoTime();
+
+        try (Quarantine<R> quarantine = new Quarantine<>(quarantineFile, formatter))
+        {
+            try
+            {
+                source.accept(record ->
+                {
+                    batch.add(record);
+
+                    if (batch.size() == BATCH_SIZE)
+                    {
+                        commit(batch, parser, report, quarantine);
+                        batch.clear();
+                    }
+                });
+            }
+            catch (UncheckedIOException e)
+            {
+                report.failure = e.getCause().getMessage();
+            }
+
+            commit(batch, parser, report, quarantine);
+
+            if (report.failure != null)
+            {
+                report.read++;
+                report.rejected++;
+                report.rejections.merge(ExceptionCode.CODE_256, 1L, Long::sum);
+                quarantine.addUnreadable(report.read, ExceptionCode.CODE_256, report.failure);
+            }
+        }
+
+        if (report.imported > 0) carService.compact();
+
+        carService.flush();
+
+        report.elapsedNanos = System.nanoTime() - start;
+
+        return report;
+    }
+
+    /**
+     * The records are parsed and validated in parallel into two arrays
+     * indexed by the position in the batch, so the validation results need
+     * no per record objects. The rejected records are then handled in order.
+     */
+    private <R> void commit(final List<R> batch, final Function<R, Car> parser, final Report report,
+                            final Quarantine<R> quarantine)
+    {
+        if (batch.isEmpty()) return;
+
+        int size = batch.size();
+        Car[] cars = new Car[size];
+        ExceptionCode[] codes = new ExceptionCode[size];
+
+        IntStream.range(0, size).parallel().forEach(i ->
+        {
+            try
+            {
+                cars[i] = parser.apply(batch.get(i));
+                codes[i] = CarValidator.validate(cars[i]);
+            }
+            catch (IllegalArgumentException e)
+            {
+                codes[i] = ExceptionCode.CODE_256;
+            }
+        });
+
+        List<Car> valid = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++)
+        {
+            if (codes[i] == null)
+            {
+                valid.add(cars[i]);
+            }
+            else
+            {
+                report.rejections.merge(codes[i], 1L, Long::sum);
+                quarantine.add(report.read + i + 1, codes[i], batch.get(i));
+            }
+        }
+
+        report.read += size;
+        report.rejected += size - valid.size();
+        report.imported += carService.addNewCars(valid);
+    }
+
+    /**
+     * File of rejected records. Every line holds the record number, the
+     * violated rule and the record, separated by tabs. The file is created
+     * with the first rejected record; a file left by a previous import is removed.
+     */
+    private static class Quarantine<R> implements AutoCloseable
+    {
+        private final Path file;
+        private final Function<R, String> formatter;
+        private BufferedWriter writer;
+
+        Quarantine(final Path file, final Function<R, String> formatter)
+        {
+            this.file = file;
+            this.formatter = formatter;
+
+            try
+            {
+                Files.deleteIfExists(file);
+            }
+            catch (IOException e)
+            {
+                System.err.println(e);
+            }
+        }
+
+        void add(final long recordNumber, final ExceptionCode code, final R record)
+        {
+            addUnreadable(recordNumber, code, formatter.apply(record));
+        }
+
+        /**
+         * It quarantines a record which could not be read, given as the reading error.
+         */
+        void addUnreadable(final long recordNumber, final ExceptionCode code, final String error)
+        {
+            try
+            {
+                if (writer == null) writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+
+                writer.write(recordNumber + "\t" + code.getDescription() + "\t" + error);
+                writer.newLine();
+            }
+            catch (IOException e)
+            {
+                System.err.println(e);
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            if (writer == null) return;
+
+            try
+            {
+                writer.close();
+            }
+            catch (IOException e)
+            {
+                System.err.println(e);
+            }
+        }
+    }
+
+    static class Report
+    {
+        private final Path quarantineFile;
+        private final Map<ExceptionCode, Long> rejections = new EnumMap<>(ExceptionCode.class);
+        private long read;
+        private long imported;
+        private long rejected;
+        private long elapsedNanos;
+        private String failure;
+
+        private Report(final Path quarantineFile)
+        {
+            this.quarantineFile = quarantineFile;
+        }
+
+        long getRead()
+        {
+            return read;
+        }
+
+        long getImported()
+        {
+            return imported;
+        }
+
+        long getRejected()
+        {
+            return rejected;
+        }
+
+        /**
+         * It returns the number of records rejected for violating the rule.
+         *
+         * @param code violated rule
+         * @return rejected records
+         */
+        long getRejected(final ExceptionCode code)
+        {
+            return rejections.getOrDefault(code, 0L);
+        }
+
+        /**
+         * It returns the file with the rejected records or null when no record was rejected.
+         *
+         * @return quarantine file
+         */
+        Path getQuarantineFile()
+        {
+            return rejected == 0 ? null : quarantineFile;
+        }
+
+        /**
+         * It returns the number of valid cars which have not been added, mostly because they were already stored.
+         *
+         * @return skipped cars
+         */
+        long getSkipped()
+        {
+            return read - rejected - imported;
+        }
+
+        /**
+         * It returns true when the whole feed has been read. Otherwise the
+         * records after the reading error have not been imported.
+         *
+         * @return true for a complete import
+         */
+        boolean isComplete()
+        {
+            return failure == null;
+        }
+
+        double getCarsPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : read * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            String report = MessageFormat.format("ImportReport[read={0}, imported={1}, rejected={2}, skipped={3}, " +
+                                                 "time={4} ms, throughput={5,number,#} cars/s]", read, imported,
+                                                 rejected, getSkipped(), elapsedNanos / 1_000_000, getCarsPerSecond());
+
+            if (rejected == 0) return report;
+
+            StringBuilder reasons = new StringBuilder(report);
+
+            rejections.forEach((code, count) -> reasons.append("\n  ").append(code.getDescription()).append(": ").append(count));
+            reasons.append("\n  rejected records: ").append(quarantineFile);
+
+            if (failure != null) reasons.append("\n  IMPORT STOPPED, FEED UNREADABLE: ").append(failure);
+
+            return reasons.toString();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.stachera.justyna.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Developed by Justyna Stachera on 27.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 18:24.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Flight recorder event of loading the snapshot file, or its binary copy,
+ * and the journal into a car service. Parsing and validation run inside the event, so GC and file
+ * I/O events recorded meanwhile belong to the load.
+ */
+@Name("com.stachera.justyna.CarLoad")
+@Label("Car Load")
+@Category({"Cars Application", "Persistence"})
+@Description("Snapshot file and journal read into the car service")
+class CarLoadEvent extends jdk.jfr.Event
+{
+    @Label("File")
+    String file;
+
+    @Label("File Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Loaded Cars")
+    int cars;
+
+    @Label("Parsing Threads")
+    int parallelism;
+
+    @Label("Binary Snapshot")
+    @Description("Whether the binary copy was read instead of parsing the JSON file")
+    boolean binary;
+}
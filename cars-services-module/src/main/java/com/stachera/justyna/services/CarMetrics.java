@@ -0,0 +1,268 @@
+package com.stachera.justyna.services;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Developed by Justyna Stachera on 26.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:32.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Latency histograms and call counts per {@link Operation}, dataset gauges
+ * and persisted bytes of one car service. Operations are timed by the caller
+ * with {@link System#nanoTime()} and recorded with {@link #record(Operation, long)},
+ * which costs one lock-free bucket increment; see {@link LatencyHistogram}.
+ * The metrics are published as a {@link CarMetricsMXBean}.
+ */
+class CarMetrics implements CarMetricsMXBean
+{
+    private static final String DOMAIN = "com.stachera.justyna.services";
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    enum Operation
+    {
+        LOAD, SNAPSHOT, JOURNAL, ADD, CARS, SORT, SORT_CURSOR, QUERY, EXPLAIN, MILEAGE, MILEAGE_CURSOR, MODEL_MAP,
+        STATISTICS, HIGHEST_PRICE, COMPONENT_MAP, ALL_COMPONENTS, ANY_COMPONENTS, PRICE_BETWEEN, COLOUR_COUNT,
+        SORTED_COMPONENTS
+    }
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    private final LongSupplier carCount;
+    private final LongSupplier datasetVersion;
+    private final LongSupplier persistedCarCount;
+    private final LongSupplier persistQueueSize;
+
+    private ObjectName name;
+    private boolean unregistered;
+
+    CarMetrics(final LongSupplier carCount, final LongSupplier datasetVersion, final LongSupplier persistedCarCount,
+               final LongSupplier persistQueueSize)
+    {
+        this.carCount = carCount;
+        this.datasetVersion = datasetVersion;
+        this.persistedCarCount = persistedCarCount;
+        this.persistQueueSize = persistQueueSize;
+
+        for (int operation = 0; operation < latencies.length; operation++)
+        {
+            latencies[operation] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * It records the latency of an operation started at the given time.
+     *
+     * @param operation  operation
+     * @param startNanos {@link System#nanoTime()} at the start of the operation
+     */
+    void record(final Operation operation, final long startNanos)
+    {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    void addBytesRead(final long bytes)
+    {
+        bytesRead.add(bytes);
+    }
+
+    void addBytesWritten(final long bytes)
+    {
+        bytesWritten.add(bytes);
+    }
+
+    LatencyHistogram.Snapshot getLatency(final Operation operation)
+    {
+        return latencies[operation.ordinal()].snapshot();
+    }
+
+    /**
+     * It registers the metrics in the platform MBean server on a background
+     * thread, as starting the MBean server takes a few hundred milliseconds.
+     *
+     * @param fileName name of the snapshot file the service reads
+     */
+    void registerInBackground(final String fileName)
+    {
+        Thread registration = new Thread(() -> register(fileName), "car-metrics-registration");
+
+        registration.setDaemon(true);
+        registration.start();
+    }
+
+    /**
+     * It registers the metrics in the platform MBean server unless they have
+     * been unregistered already. A failed registration is reported and the
+     * metrics stay available to the menu.
+     *
+     * @param fileName name of the snapshot file the service reads
+     */
+    synchronized void register(final String fileName)
+    {
+        if (unregistered) return;
+
+        try
+        {
+            ObjectName name = new ObjectName(DOMAIN + ":type=CarMetrics,file=" + ObjectName.quote(fileName)
+                                                     + ",id=" + INSTANCES.incrementAndGet());
+
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.name = name;
+        }
+        catch (JMException | SecurityException e)
+        {
+            System.err.println("METRICS NOT REGISTERED: " + e.getMessage());
+        }
+    }
+
+    synchronized void unregister()
+    {
+        unregistered = true;
+
+        if (name == null) return;
+
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        }
+        catch (JMException | SecurityException e)
+        {
+            System.err.println("METRICS NOT UNREGISTERED: " + e.getMessage());
+        }
+
+        name = null;
+    }
+
+    @Override
+    public long getCarCount()
+    {
+        return carCount.getAsLong();
+    }
+
+    @Override
+    public long getDatasetVersion()
+    {
+        return datasetVersion.getAsLong();
+    }
+
+    @Override
+    public long getBytesRead()
+    {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten()
+    {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getPersistedCarCount()
+    {
+        return persistedCarCount.getAsLong();
+    }
+
+    @Override
+    public long getPersistQueueSize()
+    {
+        return persistQueueSize.getAsLong();
+    }
+
+    @Override
+    public Map<String, Long> getCallCounts()
+    {
+        Map<String, Long> counts = new LinkedHashMap<>();
+
+        for (Operation operation : Operation.values())
+        {
+            long count = getLatency(operation).getCount();
+
+            if (count > 0) counts.put(operation.name(), count);
+        }
+
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getCallsPerSecond()
+    {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+
+        return latencies(snapshot -> snapshot.getCount() / seconds);
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP50()
+    {
+        return latencies(snapshot -> snapshot.getPercentile(0.5) / 1000d);
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP99()
+    {
+        return latencies(snapshot -> snapshot.getPercentile(0.99) / 1000d);
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP999()
+    {
+        return latencies(snapshot -> snapshot.getPercentile(0.999) / 1000d);
+    }
+
+    @Override
+    public String dump()
+    {
+        StringBuilder dump = new StringBuilder();
+
+        dump.append("cars=").append(getCarCount())
+            .append(", version=").append(getDatasetVersion())
+            .append(", bytesRead=").append(getBytesRead())
+            .append(", bytesWritten=").append(getBytesWritten())
+            .append(", persistedCars=").append(getPersistedCarCount())
+            .append(", persistQueue=").append(getPersistQueueSize());
+
+        for (Operation operation : Operation.values())
+        {
+            LatencyHistogram.Snapshot latency = getLatency(operation);
+
+            if (latency.getCount() > 0) dump.append('\n').append(operation).append(": ").append(latency);
+        }
+
+        return dump.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return dump();
+    }
+
+    private Map<String, Double> latencies(final ToDoubleFunction<LatencyHistogram.Snapshot> value)
+    {
+        Map<String, Double> values = new LinkedHashMap<>();
+
+        for (Operation operation : Operation.values())
+        {
+            LatencyHistogram.Snapshot latency = getLatency(operation);
+
+            if (latency.getCount() > 0) values.put(operation.name(), value.applyAsDouble(latency));
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,44 @@
+package com.stachera.justyna.services;
+
+import java.util.Map;
+
+/**
+ * Developed by Justyna Stachera on 26.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:14.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Metrics of a car service published through JMX. Latencies are given in
+ * microseconds and keyed by operation name.
+ */
+public interface CarMetricsMXBean
+{
+    long getCarCount();
+
+    long getDatasetVersion();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getPersistedCarCount();
+
+    long getPersistQueueSize();
+
+    Map<String, Long> getCallCounts();
+
+    Map<String, Double> getCallsPerSecond();
+
+    Map<String, Double> getLatencyP50();
+
+    Map<String, Double> getLatencyP99();
+
+    Map<String, Double> getLatencyP999();
+
+    /**
+     * It returns all metrics as text, one operation per line.
+     *
+     * @return metrics
+     */
+    String dump();
+}
@@ -0,0 +1,37 @@
+package com.stachera.justyna.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Developed by Justyna Stachera on 27.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 18:31.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Flight recorder event of one write of the background persister: a synced
+ * journal append or a rewrite of the whole snapshot file.
+ */
+@Name("com.stachera.justyna.CarPersist")
+@Label("Car Persist")
+@Category({"Cars Application", "Persistence"})
+@Description("Cars written to the journal or the snapshot file")
+class CarPersistEvent extends jdk.jfr.Event
+{
+    static final String JOURNAL = "JOURNAL";
+    static final String SNAPSHOT = "SNAPSHOT";
+
+    @Label("Kind")
+    @Description("JOURNAL for an append, SNAPSHOT for a rewrite of the snapshot file")
+    String kind;
+
+    @Label("Written Cars")
+    int cars;
+
+    @Label("Written Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,405 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.converters.CarJsonJournal;
+import com.stachera.justyna.models.models.Car;
+import com.stachera.justyna.services.CarMetrics.Operation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Developed by Justyna Stachera on 20.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 20:55.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Write-behind persistence of added cars. Cars are queued and a background
+ * task appends everything queued so far to the journal with one synced
+ * write, compacting the journal into the snapshot file once it grows past
+ * {@value #JOURNAL_COMPACTION_THRESHOLD} entries. The queue is bounded, so
+ * producers block when the disk cannot keep up. Failed writes are reported to
+ * the error handler and retried, so no car is dropped while the persister runs.
+ *
+ * The task runs on a single writer thread, which persisters of several
+ * journals may share, see {@link #newExecutor()}; at most one task of a
+ * persister is scheduled at a time. A failing journal delays the other
+ * journals of the thread by the retry delay.
+ */
+class CarPersister implements AutoCloseable
+{
+    static final int JOURNAL_COMPACTION_THRESHOLD = 1000;
+    static final int QUEUE_CAPACITY = 65_536;
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    // queue markers, compared by identity
+    private static final Car COMPACTION = new Car(null, null, null, null, null);
+    private static final Car SHUTDOWN = new Car(null, null, null, null, null);
+
+    private final CarJsonJournal journal;
+    private final Runnable snapshotWriter;
+    private final Consumer<? super Exception> errorHandler;
+    private final CarMetrics metrics;
+    private final BlockingQueue<Car> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final Object durableMonitor = new Object();
+    private volatile long submitted;
+    private long durable;
+    private boolean closed;
+    private boolean stopped;
+
+    // state of the writing task, handed from one task to the next through scheduled
+    private final List<Car> entries = new ArrayList<>();
+    private final List<Car> cars = new ArrayList<>();
+    private int scanned;
+    private boolean compaction;
+    private boolean shutdown;
+
+    private final AtomicLong persistedCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong compactionCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * The persister writes on its own thread, which is stopped on {@link #close()}.
+     *
+     * @param journal        journal the cars are appended to
+     * @param snapshotWriter writes all current cars to the snapshot file
+     * @param errorHandler   receives every failed write
+     * @param metrics        records the latency and size of every journal write
+     */
+    CarPersister(final CarJsonJournal journal, final Runnable snapshotWriter,
+                 final Consumer<? super Exception> errorHandler, final CarMetrics metrics)
+    {
+        this(journal, snapshotWriter, errorHandler, metrics, newExecutor(), true);
+    }
+
+    /**
+     * The persister writes on the given thread, which is left running on {@link #close()}.
+     *
+     * @param journal        journal the cars are appended to
+     * @param snapshotWriter writes all current cars to the snapshot file
+     * @param errorHandler   receives every failed write
+     * @param metrics        records the latency and size of every journal write
+     * @param executor       single writer thread, see {@link #newExecutor()}
+     */
+    CarPersister(final CarJsonJournal journal, final Runnable snapshotWriter,
+                 final Consumer<? super Exception> errorHandler, final CarMetrics metrics,
+                 final ExecutorService executor)
+    {
+        this(journal, snapshotWriter, errorHandler, metrics, executor, false);
+    }
+
+    private CarPersister(final CarJsonJournal journal, final Runnable snapshotWriter,
+                         final Consumer<? super Exception> errorHandler, final CarMetrics metrics,
+                         final ExecutorService executor, final boolean ownExecutor)
+    {
+        this.journal = journal;
+        this.snapshotWriter = snapshotWriter;
+        this.errorHandler = errorHandler;
+        this.metrics = metrics;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    /**
+     * It returns a single daemon writer thread which persisters may share.
+     *
+     * @return writer thread
+     */
+    static ExecutorService newExecutor()
+    {
+        return Executors.newSingleThreadExecutor(task ->
+        {
+            Thread thread = new Thread(task, "car-persister");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * It queues the cars for persistence, blocking while the queue is full.
+     *
+     * @param cars {@link Car}s to persist
+     * @return sequence number to pass to {@link #awaitDurable(long, long, TimeUnit)}
+     */
+    synchronized long persist(final Collection<Car> cars)
+    {
+        for (Car car : cars)
+        {
+            enqueue(car);
+        }
+
+        return submitted;
+    }
+
+    /**
+     * It queues a compaction of the journal into the snapshot file.
+     *
+     * @return sequence number to pass to {@link #awaitDurable(long, long, TimeUnit)}
+     */
+    synchronized long compact()
+    {
+        enqueue(COMPACTION);
+
+        return submitted;
+    }
+
+    /**
+     * It waits until everything queued before the call has been written.
+     */
+    void flush()
+    {
+        awaitDurable(submitted, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * It waits until everything up to the given sequence number has been written.
+     *
+     * @param sequence sequence number returned by {@link #persist(Collection)} or {@link #compact()}
+     * @param timeout  maximum time to wait
+     * @param unit     timeout unit
+     * @return true if the writes are durable, false on timeout or interruption
+     */
+    boolean awaitDurable(final long sequence, final long timeout, final TimeUnit unit)
+    {
+        long deadline = System.nanoTime() + Math.min(unit.toNanos(timeout), Long.MAX_VALUE / 2);
+
+        synchronized (durableMonitor)
+        {
+            try
+            {
+                while (durable < sequence && !stopped)
+                {
+                    long remaining = deadline - System.nanoTime();
+
+                    if (remaining <= 0) return false;
+
+                    TimeUnit.NANOSECONDS.timedWait(durableMonitor, remaining);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+
+                return false;
+            }
+
+            return durable >= sequence;
+        }
+    }
+
+    long getQueueSize()
+    {
+        return queue.size();
+    }
+
+    long getPersistedCount()
+    {
+        return persistedCount.get();
+    }
+
+    long getWriteCount()
+    {
+        return writeCount.get();
+    }
+
+    long getCompactionCount()
+    {
+        return compactionCount.get();
+    }
+
+    long getFailureCount()
+    {
+        return failureCount.get();
+    }
+
+    /**
+     * It writes everything queued so far and stops the persister, and its
+     * thread unless the thread is shared. Writes still failing after shutdown
+     * has been requested are given up.
+     */
+    @Override
+    public void close()
+    {
+        long sequence;
+
+        synchronized (this)
+        {
+            if (closed) return;
+
+            closed = true;
+            sequence = enqueue(SHUTDOWN);
+        }
+
+        awaitDurable(sequence, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        if (ownExecutor) executor.shutdown();
+    }
+
+    private long enqueue(final Car car)
+    {
+        try
+        {
+            queue.put(car);
+            submitted++;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the persistence queue", e);
+        }
+
+        schedule();
+
+        return submitted;
+    }
+
+    private void schedule()
+    {
+        if (isStopped()) return;
+
+        if (scheduled.compareAndSet(false, true)) executor.execute(this::run);
+    }
+
+    /**
+     * It writes everything queued so far once and schedules itself again
+     * while entries are left, so other persisters sharing the thread take turns.
+     */
+    private void run()
+    {
+        try
+        {
+            // a failed batch is retried as it is, new cars wait in the bounded queue meanwhile
+            if (entries.isEmpty()) queue.drainTo(entries);
+
+            for (; scanned < entries.size(); scanned++)
+            {
+                Car entry = entries.get(scanned);
+
+                if (entry == COMPACTION) compaction = true;
+                else if (entry == SHUTDOWN) shutdown = true;
+                else cars.add(entry);
+            }
+
+            write(cars, compaction);
+            compaction = false;
+            markDurable(entries.size());
+            entries.clear();
+            scanned = 0;
+
+            if (shutdown) stop();
+        }
+        catch (RuntimeException e)
+        {
+            failureCount.incrementAndGet();
+            errorHandler.accept(e);
+
+            if (shutdown)
+            {
+                stop();
+            }
+            else
+            {
+                try
+                {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                }
+                catch (InterruptedException interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                    stop();
+                }
+            }
+        }
+        finally
+        {
+            scheduled.set(false);
+
+            if (!isStopped() && (!entries.isEmpty() || !queue.isEmpty())) schedule();
+        }
+    }
+
+    private void stop()
+    {
+        synchronized (durableMonitor)
+        {
+            stopped = true;
+            durableMonitor.notifyAll();
+        }
+    }
+
+    private boolean isStopped()
+    {
+        synchronized (durableMonitor)
+        {
+            return stopped;
+        }
+    }
+
+    /**
+     * It appends the cars to the journal and compacts it when requested or
+     * when it is too long. Cars are removed from the list once they are
+     * journaled, so a retry after a failed compaction does not append them again.
+     */
+    private void write(final List<Car> cars, final boolean compaction)
+    {
+        if (!cars.isEmpty())
+        {
+            CarPersistEvent event = FlightRecorder.isInitialized() ? new CarPersistEvent() : null;
+            long start = System.nanoTime();
+
+            if (event != null) event.begin();
+
+            long bytes = journal.append(cars);
+
+            if (event != null) event.end();
+
+            metrics.addBytesWritten(bytes);
+            metrics.record(Operation.JOURNAL, start);
+
+            if (event != null && event.shouldCommit())
+            {
+                event.kind = CarPersistEvent.JOURNAL;
+                event.cars = cars.size();
+                event.bytes = bytes;
+                event.commit();
+            }
+            writeCount.incrementAndGet();
+            persistedCount.addAndGet(cars.size());
+            cars.clear();
+        }
+
+        if (compaction || journal.size() >= JOURNAL_COMPACTION_THRESHOLD)
+        {
+            snapshotWriter.run();
+            journal.clear();
+            compactionCount.incrementAndGet();
+        }
+    }
+
+    private void markDurable(final int entries)
+    {
+        synchronized (durableMonitor)
+        {
+            durable += entries;
+            durableMonitor.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Developed by Justyna Stachera on 24.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 19:12.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Immutable query over the stored cars. All given predicates have to match:
+ * the model is one of the given models, the colour one of the given colours,
+ * price and mileage are within the inclusive bounds and the car has all given
+ * components. The matching cars are ordered by the sort keys (by insertion
+ * order when there are none) and paged with offset and limit. Queries are
+ * planned and run by {@link QueryPlan}.
+ */
+class CarQuery
+{
+    private final Set<String> models;
+    private final Set<Colour> colours;
+    private final BigDecimal priceMin;
+    private final BigDecimal priceMax;
+    private final int mileageMin;
+    private final int mileageMax;
+    private final Set<String> components;
+    private final List<SortKey> sortKeys;
+    private final int offset;
+    private final int limit;
+
+    private CarQuery(final CarQueryBuilder builder)
+    {
+        this.models = builder.models == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(builder.models));
+        this.colours = builder.colours == null ? null : Collections.unmodifiableSet(EnumSet.copyOf(builder.colours));
+        this.priceMin = builder.priceMin;
+        this.priceMax = builder.priceMax;
+        this.mileageMin = builder.mileageMin;
+        this.mileageMax = builder.mileageMax;
+        this.components = Collections.unmodifiableSet(new LinkedHashSet<>(builder.components));
+        this.sortKeys = Collections.unmodifiableList(new ArrayList<>(builder.sortKeys));
+        this.offset = builder.offset;
+        this.limit = builder.limit;
+    }
+
+    static CarQueryBuilder builder()
+    {
+        return new CarQueryBuilder();
+    }
+
+    /**
+     * @return accepted models or null for any model
+     */
+    Set<String> getModels()
+    {
+        return models;
+    }
+
+    /**
+     * @return accepted colours or null for any colour
+     */
+    Set<Colour> getColours()
+    {
+        return colours;
+    }
+
+    /**
+     * @return inclusive lower price bound or null
+     */
+    BigDecimal getPriceMin()
+    {
+        return priceMin;
+    }
+
+    /**
+     * @return inclusive upper price bound or null
+     */
+    BigDecimal getPriceMax()
+    {
+        return priceMax;
+    }
+
+    int getMileageMin()
+    {
+        return mileageMin;
+    }
+
+    int getMileageMax()
+    {
+        return mileageMax;
+    }
+
+    Set<String> getComponents()
+    {
+        return components;
+    }
+
+    List<SortKey> getSortKeys()
+    {
+        return sortKeys;
+    }
+
+    int getOffset()
+    {
+        return offset;
+    }
+
+    int getLimit()
+    {
+        return limit;
+    }
+
+    /**
+     * It returns the same query with another page, e.g. to read the first
+     * offset + limit cars of every partition.
+     *
+     * @param offset number of leading cars to skip
+     * @param limit  maximum number of cars to return
+     * @return query with the given page
+     */
+    CarQuery withPage(final int offset, final int limit)
+    {
+        CarQueryBuilder builder = new CarQueryBuilder();
+
+        builder.models = models;
+
+        if (colours != null)
+        {
+            builder.colours = EnumSet.noneOf(Colour.class);
+            builder.colours.addAll(colours);
+        }
+
+        builder.priceMin = priceMin;
+        builder.priceMax = priceMax;
+        builder.mileageMin = mileageMin;
+        builder.mileageMax = mileageMax;
+        builder.components.addAll(components);
+        builder.sortKeys.addAll(sortKeys);
+
+        return builder.offset(offset).limit(limit).build();
+    }
+
+    boolean hasPriceBounds()
+    {
+        return priceMin != null || priceMax != null;
+    }
+
+    boolean hasMileageBounds()
+    {
+        return mileageMin != Integer.MIN_VALUE || mileageMax != Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CarQuery carQuery = (CarQuery) o;
+        return mileageMin == carQuery.mileageMin &&
+                mileageMax == carQuery.mileageMax &&
+                offset == carQuery.offset &&
+                limit == carQuery.limit &&
+                Objects.equals(models, carQuery.models) &&
+                Objects.equals(colours, carQuery.colours) &&
+                Objects.equals(priceMin, carQuery.priceMin) &&
+                Objects.equals(priceMax, carQuery.priceMax) &&
+                components.equals(carQuery.components) &&
+                sortKeys.equals(carQuery.sortKeys);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(models, colours, priceMin, priceMax, mileageMin, mileageMax, components, sortKeys, offset,
+                            limit);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringJoiner query = new StringJoiner(", ", "CarQuery[", "]");
+
+        if (models != null) query.add("model in " + models);
+        if (colours != null) query.add("colour in " + colours);
+        if (priceMin != null) query.add("price >= " + priceMin);
+        if (priceMax != null) query.add("price <= " + priceMax);
+        if (mileageMin != Integer.MIN_VALUE) query.add("mileage >= " + mileageMin);
+        if (mileageMax != Integer.MAX_VALUE) query.add("mileage <= " + mileageMax);
+        if (!components.isEmpty()) query.add("components contain " + components);
+        if (!sortKeys.isEmpty()) query.add("order by " + sortKeys);
+        if (offset > 0) query.add("offset " + offset);
+        if (limit < Integer.MAX_VALUE) query.add("limit " + limit);
+
+        return query.toString();
+    }
+
+    static class CarQueryBuilder
+    {
+        private Set<String> models;
+        private Set<Colour> colours;
+        private BigDecimal priceMin;
+        private BigDecimal priceMax;
+        private int mileageMin = Integer.MIN_VALUE;
+        private int mileageMax = Integer.MAX_VALUE;
+        private final Set<String> components = new LinkedHashSet<>();
+        private final List<SortKey> sortKeys = new ArrayList<>();
+        private int offset;
+        private int limit = Integer.MAX_VALUE;
+
+        /**
+         * It restricts the models, repeated calls narrow the accepted models down.
+         */
+        CarQueryBuilder model(final String... models)
+        {
+            Set<String> accepted = new LinkedHashSet<>(Arrays.asList(models));
+
+            if (this.models != null) accepted.retainAll(this.models);
+
+            this.models = accepted;
+
+            return this;
+        }
+
+        /**
+         * It restricts the colours, repeated calls narrow the accepted colours down.
+         */
+        CarQueryBuilder colour(final Colour... colours)
+        {
+            Set<Colour> accepted = EnumSet.noneOf(Colour.class);
+            accepted.addAll(Arrays.asList(colours));
+
+            if (this.colours != null) accepted.retainAll(this.colours);
+
+            this.colours = accepted;
+
+            return this;
+        }
+
+        CarQueryBuilder priceBetween(final BigDecimal min, final BigDecimal max)
+        {
+            return priceMin(min).priceMax(max);
+        }
+
+        CarQueryBuilder priceMin(final BigDecimal min)
+        {
+            if (min != null && (priceMin == null || min.compareTo(priceMin) > 0)) priceMin = min;
+
+            return this;
+        }
+
+        CarQueryBuilder priceMax(final BigDecimal max)
+        {
+            if (max != null && (priceMax == null || max.compareTo(priceMax) < 0)) priceMax = max;
+
+            return this;
+        }
+
+        CarQueryBuilder mileageBetween(final int min, final int max)
+        {
+            mileageMin = Math.max(mileageMin, min);
+            mileageMax = Math.min(mileageMax, max);
+
+            return this;
+        }
+
+        CarQueryBuilder mileageGreaterThan(final int mileage)
+        {
+            return mileage == Integer.MAX_VALUE ? mileageBetween(Integer.MAX_VALUE, Integer.MIN_VALUE)
+                                                : mileageBetween(mileage + 1, Integer.MAX_VALUE);
+        }
+
+        CarQueryBuilder mileageLowerThan(final int mileage)
+        {
+            return mileage == Integer.MIN_VALUE ? mileageBetween(Integer.MAX_VALUE, Integer.MIN_VALUE)
+                                                : mileageBetween(Integer.MIN_VALUE, mileage - 1);
+        }
+
+        CarQueryBuilder withComponents(final String... components)
+        {
+            return withComponents(Arrays.asList(components));
+        }
+
+        CarQueryBuilder withComponents(final Collection<String> components)
+        {
+            components.forEach(component -> this.components.add(Objects.requireNonNull(component)));
+
+            return this;
+        }
+
+        CarQueryBuilder orderBy(final SortKey... keys)
+        {
+            return orderBy(Arrays.asList(keys));
+        }
+
+        CarQueryBuilder orderBy(final List<SortKey> keys)
+        {
+            keys.forEach(key -> sortKeys.add(Objects.requireNonNull(key)));
+
+            return this;
+        }
+
+        CarQueryBuilder offset(final int offset)
+        {
+            if (offset < 0) throw new IllegalArgumentException("NEGATIVE OFFSET");
+
+            this.offset = offset;
+
+            return this;
+        }
+
+        CarQueryBuilder limit(final int limit)
+        {
+            if (limit < 0) throw new IllegalArgumentException("NEGATIVE LIMIT");
+
+            this.limit = limit;
+
+            return this;
+        }
+
+        CarQuery build()
+        {
+            return new CarQuery(this);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.stachera.justyna.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Developed by Justyna Stachera on 27.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 18:40.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Flight recorder event of one car service query, including the time spent
+ * in the result cache.
+ */
+@Name("com.stachera.justyna.CarQuery")
+@Label("Car Query")
+@Category({"Cars Application", "Service"})
+@Description("Query run by the car service")
+class CarQueryEvent extends jdk.jfr.Event
+{
+    @Label("Operation")
+    String operation;
+
+    @Label("Parameters")
+    String parameters;
+
+    @Label("Result Size")
+    int resultSize;
+
+    @Label("Dataset Version")
+    long datasetVersion;
+}
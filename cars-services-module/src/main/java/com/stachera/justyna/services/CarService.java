@@ -0,0 +1,116 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.enums.Criterion;
+import com.stachera.justyna.models.models.Car;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Developed by Justyna Stachera on 28.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 19:24.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Operations of the car services used by the menu, the HTTP server and the
+ * importer. {@link CarServiceImpl} keeps all cars of one snapshot file,
+ * {@link PartitionedCarService} splits them by model over several files.
+ */
+abstract class CarService implements AutoCloseable
+{
+    /**
+     * System property with the number of partitions new snapshot files are split into.
+     */
+    static final String PARTITIONS_PROPERTY = "cars.partitions";
+
+    /**
+     * It opens the cars of the snapshot file. The cars are partitioned when
+     * the file has been partitioned before or when the {@value #PARTITIONS_PROPERTY}
+     * system property asks for more than one partition.
+     *
+     * @param filePath project relative file path
+     * @return car service
+     */
+    static CarService open(final String filePath)
+    {
+        int partitions = Integer.getInteger(PARTITIONS_PROPERTY, 1);
+
+        if (partitions > 1 || Files.isDirectory(Paths.get(PartitionedCarService.directoryName(filePath))))
+        {
+            return new PartitionedCarService(filePath, partitions);
+        }
+
+        return new CarServiceImpl(filePath);
+    }
+
+    abstract Set<Car> getCars();
+
+    abstract ResultCursor<Car> getCarsCursor();
+
+    abstract boolean addNewCar(Car car);
+
+    abstract int addNewCars(Collection<Car> cars);
+
+    abstract void compact();
+
+    abstract void flush();
+
+    @Override
+    public abstract void close();
+
+    /**
+     * It returns a {@link Car} collection sorted by {@link Criterion}
+     * given as an argument. The method sorts by model name, color,
+     * price or mileage. Additionally, it should be specified if sorting
+     * is descending or ascending.
+     *
+     * @param criterion sort criterion
+     * @param isDesc    descending mode on/off
+     * @return {@link Car} collection
+     */
+    List<Car> sort(Criterion criterion, boolean isDesc)
+    {
+        return sort(Collections.singletonList(new SortKey(criterion, isDesc)), 0, Integer.MAX_VALUE);
+    }
+
+    abstract List<Car> sort(List<SortKey> keys, int offset, int limit);
+
+    abstract ResultCursor<Car> sortCursor(List<SortKey> keys);
+
+    abstract List<Car> query(CarQuery query);
+
+    abstract String explain(CarQuery query);
+
+    abstract List<Car> getCarsIfMileageGt(Integer mileage);
+
+    abstract ResultCursor<Car> getCarsIfMileageGtCursor(Integer mileage);
+
+    abstract Map<String, Car> getModelCarMap();
+
+    abstract String getStatistics();
+
+    abstract List<Car> getTheHighestPriceCars();
+
+    abstract Map<String, List<Car>> getComponentCarsMap();
+
+    abstract List<Car> getCarsWithAllComponents(Collection<String> components);
+
+    abstract List<Car> getCarsWithAnyComponents(Collection<String> components);
+
+    abstract List<Car> getCarsPriceBetween(BigDecimal lowerPrice, BigDecimal upperPrice);
+
+    abstract Map<Colour, Long> getCarAmountByColour();
+
+    abstract List<Car> sortCarComponents();
+
+    abstract String getCacheStatistics();
+
+    abstract CarMetrics getMetrics();
+}
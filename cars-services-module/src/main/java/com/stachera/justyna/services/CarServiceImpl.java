@@ -3,85 +3,352 @@ package com.stachera.justyna.services;
 import com.stachera.justyna.exceptions.CustomException;
 import com.stachera.justyna.exceptions.ExceptionCode;
 import com.stachera.justyna.models.converters.CarJsonConverter;
+import com.stachera.justyna.models.converters.CarJsonJournal;
 import com.stachera.justyna.models.enums.Colour;
-import com.stachera.justyna.models.enums.Criterion;
 import com.stachera.justyna.models.models.Car;
 import com.stachera.justyna.models.models.Cars;
+import com.stachera.justyna.services.CarMetrics.Operation;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.text.MessageFormat;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import jdk.jfr.FlightRecorder;
 
 /**
  * Developed by Justyna Stachera on 23.01.2019.
  * Package name: com.stachera.justyna.services
  * Last modified 21:13.
  * Copyright (c) 2019. All rights reserved.
+ *
+ * The service can be shared between threads. Writers are serialized and
+ * publish a new immutable {@link CarSnapshot} after every change; every query
+ * reads the current snapshot once and runs against it without locking, so it
+ * always sees a consistent set of cars. Added cars are persisted behind the
+ * scenes by a {@link CarPersister}; {@link #flush()} waits until they are on disk.
+ * Query results are kept in a {@link ResultCache} until the next car is
+ * added; cached results are unmodifiable. Latencies of queries, loads and
+ * writes are recorded in {@link CarMetrics} and published through JMX.
+ * Flight recorder events are only created once the flight recorder runs, as
+ * loading the first event class without it delays the start noticeably.
  */
-class CarServiceImpl
+class CarServiceImpl extends CarService
 {
-    private final Set<Car> cars;
+    static final int RESULT_CACHE_CAPACITY = 256;
+
+    private final Object writeLock = new Object();
+    private final CarStore store = new CarStore();
+    private final CarPersister persister;
+    private final ResultCache cache;
+    private final CarMetrics metrics;
 
-    private String filePath;
+    private final String jsonFileName;
+    private volatile CarSnapshot snapshot;
 
     CarServiceImpl(final String filePath)
     {
-        this.filePath = filePath;
-        this.cars = new Cars(filePath).getCars();
+        this(filePath, e -> System.err.println("PERSISTENCE FAILED: " + e));
+    }
+
+    /**
+     * The snapshot file is parsed on all available processors.
+     *
+     * @param filePath     project relative file path
+     * @param errorHandler receives every failed write of the background persister
+     */
+    CarServiceImpl(final String filePath, final Consumer<? super Exception> errorHandler)
+    {
+        this(filePath, errorHandler, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * The result cache keeps up to {@value #RESULT_CACHE_CAPACITY} results.
+     *
+     * @param filePath        project relative file path
+     * @param errorHandler    receives every failed write of the background persister
+     * @param loadParallelism number of threads parsing the snapshot file
+     */
+    CarServiceImpl(final String filePath, final Consumer<? super Exception> errorHandler, final int loadParallelism)
+    {
+        this(filePath, errorHandler, loadParallelism, RESULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * The service persists on its own writer thread and registers its metrics as an MBean.
+     *
+     * @param filePath            project relative file path
+     * @param errorHandler        receives every failed write of the background persister
+     * @param loadParallelism     number of threads parsing the snapshot file
+     * @param resultCacheCapacity number of cached query results, 0 disables the cache
+     * @throws com.google.gson.JsonParseException when the snapshot file is malformed
+     * @throws java.io.UncheckedIOException      when the snapshot file cannot be read
+     */
+    CarServiceImpl(final String filePath, final Consumer<? super Exception> errorHandler, final int loadParallelism,
+                   final int resultCacheCapacity)
+    {
+        this(filePath, errorHandler, loadParallelism, resultCacheCapacity, null, true);
+    }
+
+    /**
+     * @param filePath            project relative file path
+     * @param errorHandler        receives every failed write of the background persister
+     * @param loadParallelism     number of threads parsing the snapshot file
+     * @param resultCacheCapacity number of cached query results, 0 disables the cache
+     * @param persisterExecutor   writer thread shared with other services, see
+     *                            {@link CarPersister#newExecutor()}, or null for an own thread
+     * @param registerMetrics     true to register the metrics as an MBean
+     * @throws com.google.gson.JsonParseException when the snapshot file is malformed
+     * @throws java.io.UncheckedIOException      when the snapshot file cannot be read
+     */
+    CarServiceImpl(final String filePath, final Consumer<? super Exception> errorHandler, final int loadParallelism,
+                   final int resultCacheCapacity, final ExecutorService persisterExecutor,
+                   final boolean registerMetrics)
+    {
+        this.cache = new ResultCache(resultCacheCapacity);
+        this.jsonFileName = Cars.prepareFilePath(filePath);
+        this.metrics = new CarMetrics(() -> snapshot.size(), () -> snapshot.version(), this::getPersistedCount,
+                                      this::getPersistQueueSize);
+
+        synchronized (writeLock)
+        {
+            CarLoadEvent event = FlightRecorder.isInitialized() ? new CarLoadEvent() : null;
+            Path jsonPath = Paths.get(jsonFileName);
+            long start = System.nanoTime();
+            long bytesWritten = 0;
+
+            if (event != null) event.begin();
+
+            boolean binary = CarSnapshotFile.read(jsonPath, store);
+
+            if (!binary)
+            {
+                // a malformed or unreadable file is thrown, so the binary copy is written only for a complete read
+                new CarJsonConverter(jsonFileName).convert(this::load, loadParallelism);
+                bytesWritten = writeBinarySnapshot(store.snapshot());
+            }
+
+            new CarJsonJournal(jsonFileName).replay(this::load);
+            snapshot = store.snapshot();
+
+            if (event != null) event.end();
+
+            long bytes = fileSize(jsonPath) + fileSize(Paths.get(jsonFileName + ".journal"))
+                    + (binary ? fileSize(CarSnapshotFile.binaryPath(jsonPath)) : 0);
+
+            metrics.record(Operation.LOAD, start);
+            metrics.addBytesRead(bytes);
+            metrics.addBytesWritten(bytesWritten);
+
+            if (event != null && event.shouldCommit())
+            {
+                event.file = jsonFileName;
+                event.bytes = bytes;
+                event.cars = snapshot.size();
+                event.parallelism = loadParallelism;
+                event.binary = binary;
+                event.commit();
+            }
+        }
+
+        CarJsonJournal journal = new CarJsonJournal(jsonFileName);
+
+        this.persister = persisterExecutor == null
+                         ? new CarPersister(journal, this::writeSnapshot, errorHandler, metrics)
+                         : new CarPersister(journal, this::writeSnapshot, errorHandler, metrics, persisterExecutor);
+
+        if (registerMetrics) this.metrics.registerInBackground(Paths.get(jsonFileName).getFileName().toString());
     }
 
     Set<Car> getCars()
     {
-        return cars;
+        CarSnapshot snapshot = this.snapshot;
+
+        return timed(Operation.CARS, snapshot, () -> new LinkedHashSet<>(snapshot.materializeAll()));
+    }
+
+    /**
+     * It returns a cursor over all {@link Car}s in the order they were added.
+     * Cars are created one page at a time, so the collection is never held
+     * in memory as a whole.
+     *
+     * @return {@link Car} cursor
+     */
+    ResultCursor<Car> getCarsCursor()
+    {
+        return ResultCursor.of(snapshot);
     }
 
-    void addNewCar(final Car car)
+    /**
+     * It adds a new {@link Car} and queues it for persistence. The method
+     * returns as soon as the car is visible to queries; it only blocks when
+     * the persistence queue is full.
+     *
+     * @param car {@link Car} to add
+     * @return true if the car has been added, false if an equal car is already stored
+     */
+    boolean addNewCar(final Car car)
     {
-        cars.add(car);
+        long start = System.nanoTime();
+
+        try
+        {
+            synchronized (writeLock)
+            {
+                if (!store.add(car)) return false;
+
+                snapshot = store.snapshot();
+                persister.persist(Collections.singletonList(car));
+            }
 
-        new CarJsonConverter(filePath).convert(new Cars(cars));
+            return true;
+        }
+        finally
+        {
+            metrics.record(Operation.ADD, start);
+        }
     }
 
     /**
-     * It returns a {@link Car} collection sorted by {@link Criterion}
-     * given as an argument. The method sorts by model name, color,
-     * price or mileage. Additionally, it should be specified if sorting
-     * is descending or ascending.
+     * It adds a batch of {@link Car}s as one group commit: the new cars are
+     * published with a single snapshot and queued for persistence together.
      *
-     * @param criterion sort criterion
-     * @param isDesc    descending mode on/off
-     * @return {@link Car} collection
+     * @param cars {@link Car}s to add
+     * @return number of cars added, duplicates and invalid cars are skipped
      */
-    List<Car> sort(Criterion criterion, boolean isDesc)
-    {
-        List<Car> sortedCars = new ArrayList<>();
-
-        switch (criterion)
-        {
-            case MODEL:
-                sortedCars.addAll(cars.stream().sorted(Comparator.comparing(Car::getPrice))
-                        .collect(Collectors.toList()));
-                if (isDesc) sortedCars.sort(Comparator.comparing(Car::getPrice).reversed());
-                break;
-            case PRICE:
-                sortedCars.addAll(cars.stream().sorted(Comparator.comparing(Car::getModel))
-                        .collect(Collectors.toList()));
-                if (isDesc) sortedCars.sort(Comparator.comparing(Car::getPrice).reversed());
-            case COLOUR:
-                sortedCars.addAll(cars.stream().sorted(Comparator.comparing(Car::getModel))
-                        .collect(Collectors.toList()));
-                if (isDesc) sortedCars.sort(Comparator.comparing(Car::getPrice).reversed());
-                break;
-            case MILEAGE:
-                sortedCars.addAll(cars.stream().sorted(Comparator.comparing(Car::getModel))
-                        .collect(Collectors.toList()));
-                if (isDesc) sortedCars.sort(Comparator.comparing(Car::getPrice).reversed());
-                break;
+    int addNewCars(final Collection<Car> cars)
+    {
+        long start = System.nanoTime();
+
+        synchronized (writeLock)
+        {
+            List<Car> added = new ArrayList<>(cars.size());
+
+            for (Car car : cars)
+            {
+                try
+                {
+                    if (store.add(car)) added.add(car);
+                }
+                catch (CustomException e)
+                {
+                    System.err.println(e.getMessage());
+                }
+            }
+
+            if (!added.isEmpty())
+            {
+                snapshot = store.snapshot();
+                persister.persist(added);
+            }
+
+            metrics.record(Operation.ADD, start);
+
+            return added.size();
         }
+    }
 
-        return sortedCars;
+    /**
+     * It queues a rewrite of the snapshot file with the current cars, after
+     * which the journal is cleared.
+     */
+    void compact()
+    {
+        persister.compact();
+    }
+
+    /**
+     * It waits until all cars added so far and requested compactions are written.
+     */
+    void flush()
+    {
+        persister.flush();
+    }
+
+    /**
+     * It writes all pending changes and stops the background persister.
+     */
+    @Override
+    public void close()
+    {
+        persister.close();
+        metrics.unregister();
+    }
+
+    /**
+     * It returns a page of the {@link Car} collection sorted by the given
+     * {@link SortKey}s, the first key being the most significant. Equal cars
+     * keep the order in which they were added.
+     *
+     * @param keys   sort keys
+     * @param offset number of leading cars to skip
+     * @param limit  maximum number of cars to return
+     * @return {@link Car} collection
+     * @throws IllegalArgumentException when the offset or limit is negative
+     */
+    List<Car> sort(List<SortKey> keys, int offset, int limit)
+    {
+        SortEngine.checkPage(offset, limit);
+
+        CarSnapshot snapshot = this.snapshot;
+
+        return cached(Operation.SORT, snapshot,
+                      () -> unmodifiable(materialize(snapshot, snapshot.sortEngine().sort(keys, offset, limit))),
+                      new ArrayList<>(keys), offset, limit);
+    }
+
+    /**
+     * It returns a cursor over the {@link Car} collection sorted by the given
+     * {@link SortKey}s. Only the sorted row numbers are kept, cars are created
+     * one page at a time.
+     *
+     * @param keys sort keys
+     * @return {@link Car} cursor
+     */
+    ResultCursor<Car> sortCursor(List<SortKey> keys)
+    {
+        CarSnapshot snapshot = this.snapshot;
+
+        int[] rows = cached(Operation.SORT_CURSOR, snapshot,
+                            () -> snapshot.sortEngine().sort(keys, 0, Integer.MAX_VALUE), new ArrayList<>(keys));
+
+        return ResultCursor.of(snapshot, rows);
+    }
+
+    /**
+     * It returns the page of {@link Car}s matching the query. The query is
+     * planned against the current snapshot, see {@link QueryPlan}.
+     *
+     * @param query query
+     * @return {@link Car} collection
+     */
+    List<Car> query(CarQuery query)
+    {
+        CarSnapshot snapshot = this.snapshot;
+
+        return cached(Operation.QUERY, snapshot,
+                      () -> unmodifiable(materialize(snapshot, QueryPlan.plan(snapshot, query).execute())), query);
+    }
+
+    /**
+     * It returns the plan the query would be run with, without running it.
+     *
+     * @param query query
+     * @return plan description
+     */
+    String explain(CarQuery query)
+    {
+        CarSnapshot snapshot = this.snapshot;
+
+        return timed(Operation.EXPLAIN, snapshot, () -> QueryPlan.plan(snapshot, query).explain(), query);
     }
 
     /**
@@ -92,7 +359,24 @@ class CarServiceImpl
      */
     List<Car> getCarsIfMileageGt(Integer mileage)
     {
-        return cars.stream().filter(p -> p.getMileage() > mileage).collect(Collectors.toList());
+        CarSnapshot snapshot = this.snapshot;
+
+        return cached(Operation.MILEAGE, snapshot,
+                      () -> unmodifiable(materialize(snapshot, mileageGtRows(snapshot, mileage))), mileage);
+    }
+
+    /**
+     * It returns a cursor over the {@link Car}s which mileage is greater than argument.
+     *
+     * @param mileage mileage to compare
+     * @return {@link Car} cursor
+     */
+    ResultCursor<Car> getCarsIfMileageGtCursor(Integer mileage)
+    {
+        CarSnapshot snapshot = this.snapshot;
+
+        return ResultCursor.of(snapshot, cached(Operation.MILEAGE_CURSOR, snapshot,
+                                                () -> mileageGtRows(snapshot, mileage), mileage));
     }
 
     /**
@@ -104,23 +388,17 @@ class CarServiceImpl
      */
     Map<String, Car> getModelCarMap()
     {
-        Map<String, List<Car>> m = cars
-                .stream()
-                .collect(Collectors.groupingBy(Car::getModel));
+        CarSnapshot snapshot = this.snapshot;
+
+        return cached(Operation.MODEL_MAP, snapshot, () ->
+        {
+            Map<String, Car> modelCarMap = new LinkedHashMap<>();
 
-        return m.entrySet()
-                .stream()
-                .sorted(Comparator.comparing(Map.Entry::getKey, Comparator.reverseOrder()))
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        e -> e.getValue()
-                                .stream()
-                                .max(Comparator.comparing(Car::getPrice))
-                                .orElseThrow(() -> new CustomException(ExceptionCode.CODE_250, "INVALID VALUE")),
-                        (v1, v2) -> v1,
-                        LinkedHashMap::new
-                        )
-                );
+            snapshot.aggregates().getModelMaxRows(snapshot::modelName)
+                    .forEach((model, row) -> modelCarMap.put(model, snapshot.materialize(row)));
+
+            return Collections.unmodifiableMap(modelCarMap);
+        });
     }
 
     /**
@@ -130,72 +408,93 @@ class CarServiceImpl
      */
     String getStatistics()
     {
-        IntSummaryStatistics mileageStatistics = cars.stream().mapToInt(Car::getMileage).summaryStatistics();
-
-        BigDecimal priceMin = cars.stream().min(Comparator.comparing(Car::getPrice)).map(Car::getPrice)
-                .orElse(new BigDecimal(0));
-        BigDecimal priceMax = cars.stream().min(Comparator.comparing(Car::getPrice)).map(Car::getPrice)
-                .orElse(new BigDecimal(0));
-        BigDecimal priceAvg = cars.stream().map(Car::getPrice).reduce(BigDecimal.ZERO, BigDecimal::add)
-                .divide(new BigDecimal(cars.size()), RoundingMode.HALF_UP);
+        CarSnapshot snapshot = this.snapshot;
 
-        String mileageStatisticsStr = MessageFormat
-                .format("MileageStatistics[min={0}, max={1}, average={2}]", mileageStatistics.getMin(),
-                        mileageStatistics.getMax(), mileageStatistics.getAverage());
-        String priceStatisticsStr = MessageFormat
-                .format("PriceStatistics[min={0}, max={1}, average={2}]", priceMax, priceAvg, priceMin);
-
-        return mileageStatisticsStr + "\n" + priceStatisticsStr;
+        return cached(Operation.STATISTICS, snapshot, () -> snapshot.aggregates().getStatistics());
     }
 
     /**
-     * It returns the most expensive {@link Car} collection.
+     * It returns the most expensive {@link Car} collection, read from the tails
+     * of the {@link PriceIndex} runs.
      *
      * @return {@link Car} collection
      */
     List<Car> getTheHighestPriceCars()
     {
-        BigDecimal maxValue = cars
-                .stream()
-                .max(Comparator.comparing(Car::getPrice))
-                .orElseThrow(() -> new CustomException(ExceptionCode.CODE_250, "VALUE IS NULL"))
-                .getPrice();
+        CarSnapshot snapshot = this.snapshot;
+        PriceIndex priceIndex = snapshot.priceIndex();
+
+        if (priceIndex.size() == 0) throw new CustomException(ExceptionCode.CODE_250, "VALUE IS NULL");
 
-        return cars.stream().filter(p -> p.getPrice().equals(maxValue)).collect(Collectors.toList());
+        long maxPrice = priceIndex.maxPrice();
+
+        return cached(Operation.HIGHEST_PRICE, snapshot,
+                      () -> unmodifiable(materialize(snapshot, priceIndex.rows(maxPrice, maxPrice))));
     }
 
     /**
      * It returns component name - {@link Car} collection map. The map is sorted
-     * descending by {@link Car} collection size.
+     * by {@link Car} collection size and is read straight from the {@link ComponentIndex}.
      *
      * @return component - {@link Car} collection map
      */
     Map<String, List<Car>> getComponentCarsMap()
     {
-        Set<String> components = cars.stream().flatMap(car -> car.getComponents().stream()).collect(Collectors.toSet());
+        CarSnapshot snapshot = this.snapshot;
+
+        return cached(Operation.COMPONENT_MAP, snapshot, () ->
+        {
+            ComponentIndex componentIndex = snapshot.componentIndex();
+            Car[] cars = new Car[snapshot.size()];
+
+            return Collections.unmodifiableMap(IntStream.range(0, componentIndex.componentCount())
+                    .boxed()
+                    .sorted(Comparator.comparingInt(componentIndex::postingSize))
+                    .collect(Collectors.toMap(
+                            snapshot::componentName,
+                            component -> unmodifiable(materialize(snapshot, componentIndex.postings(component), cars)),
+                            (v1, v2) -> v1,
+                            LinkedHashMap::new)
+                    ));
+        });
+    }
+
+    /**
+     * It returns a {@link Car} collection which cars have all given components.
+     * The posting lists of the components are intersected.
+     *
+     * @param components component names
+     * @return {@link Car} collection
+     */
+    List<Car> getCarsWithAllComponents(Collection<String> components)
+    {
+        CarSnapshot snapshot = this.snapshot;
+
+        return cached(Operation.ALL_COMPONENTS, snapshot,
+                      () -> unmodifiable(materialize(snapshot, snapshot.componentIndex().all(componentIds(snapshot, components)))),
+                      new ArrayList<>(components));
+    }
 
-        Map<String, List<Car>> componentCarsMap = components
-                .stream()
-                .collect(Collectors.toMap(
-                        comp -> comp,
-                        comp -> cars.stream().filter(car -> car.getComponents().contains(comp)).collect(Collectors.toList())
-                        )
-                );
+    /**
+     * It returns a {@link Car} collection which cars have at least one of given components.
+     * The posting lists of the components are merged.
+     *
+     * @param components component names
+     * @return {@link Car} collection
+     */
+    List<Car> getCarsWithAnyComponents(Collection<String> components)
+    {
+        CarSnapshot snapshot = this.snapshot;
 
-        return componentCarsMap.entrySet()
-                .stream()
-                .sorted(Comparator.comparingInt(e -> e.getValue().size()))
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (v1, v2) -> v1,
-                        LinkedHashMap::new)
-                );
+        return cached(Operation.ANY_COMPONENTS, snapshot,
+                      () -> unmodifiable(materialize(snapshot, snapshot.componentIndex().any(componentIds(snapshot, components)))),
+                      new ArrayList<>(components));
     }
 
     /**
      * It returns a {@link Car} collection which price is between lowerPrice argument
      * and upperPrice argument. The collection is sorted by {@link Car} name.
+     * The rows are located with a binary search over the {@link PriceIndex}.
      *
      * @param lowerPrice lower price argument
      * @param upperPrice upper price argument
@@ -203,11 +502,18 @@ class CarServiceImpl
      */
     List<Car> getCarsPriceBetween(BigDecimal lowerPrice, BigDecimal upperPrice)
     {
-        return cars
-                .stream()
-                .filter(p -> lowerPrice.compareTo(p.getPrice()) <= 0 && upperPrice.compareTo(p.getPrice()) >= 0)
-                .sorted(Comparator.comparing(Car::getModel).reversed())
-                .collect(Collectors.toList());
+        CarSnapshot snapshot = this.snapshot;
+        PriceIndex priceIndex = snapshot.priceIndex();
+        long lower = CarStore.toFixedPointBound(lowerPrice, RoundingMode.CEILING);
+        long upper = CarStore.toFixedPointBound(upperPrice, RoundingMode.FLOOR);
+
+        return cached(Operation.PRICE_BETWEEN, snapshot, () ->
+        {
+            List<Car> cars = materialize(snapshot, priceIndex.rows(lower, upper));
+            cars.sort(Comparator.comparing(Car::getModel).reversed());
+
+            return unmodifiable(cars);
+        }, lower, upper);
     }
 
     /**
@@ -218,29 +524,233 @@ class CarServiceImpl
      */
     Map<Colour, Long> getCarAmountByColour()
     {
-        return cars
-                .stream()
-                .collect(Collectors.groupingBy(Car::getColour, Collectors.counting()))
-                .entrySet()
-                .stream()
-                .sorted(Comparator.comparing(Map.Entry::getKey, Comparator.reverseOrder()))
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (v1, v2) -> v1,
-                        LinkedHashMap::new));
+        CarSnapshot snapshot = this.snapshot;
+
+        return cached(Operation.COLOUR_COUNT, snapshot, () -> snapshot.aggregates().getColourCounts());
     }
 
     /**
-     * It returns a {@link Car} collection with the sorted components.
+     * It returns a {@link Car} collection with the sorted components. Every
+     * {@link Car} keeps its components sorted, so no sorting is needed.
      *
      * @return {@link Car} collection
      */
     List<Car> sortCarComponents()
     {
-        return cars
-                .stream()
-                .peek(car -> car.setComponents(car.getComponents().stream().sorted().collect(Collectors.toList())))
-                .collect(Collectors.toList());
+        CarSnapshot snapshot = this.snapshot;
+
+        return timed(Operation.SORTED_COMPONENTS, snapshot, snapshot::materializeAll);
+    }
+
+    /**
+     * It returns the hit, miss and eviction counters of the result cache.
+     *
+     * @return cache statistics
+     */
+    String getCacheStatistics()
+    {
+        return cache.toString();
+    }
+
+    /**
+     * It returns the latencies, call counts and gauges of the service.
+     *
+     * @return service metrics
+     */
+    CarMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * It returns the aggregates of the current snapshot, which are not affected by later cars.
+     *
+     * @return car aggregates
+     */
+    CarAggregates getAggregates()
+    {
+        return snapshot.aggregates();
+    }
+
+    private long getPersistedCount()
+    {
+        return persister.getPersistedCount();
+    }
+
+    private long getPersistQueueSize()
+    {
+        return persister.getQueueSize();
+    }
+
+    private void writeSnapshot()
+    {
+        CarSnapshot snapshot = this.snapshot;
+        CarPersistEvent event = FlightRecorder.isInitialized() ? new CarPersistEvent() : null;
+        long start = System.nanoTime();
+
+        if (event != null) event.begin();
+
+        new CarJsonConverter(jsonFileName).convert(snapshot.iterator());
+
+        long bytes = fileSize(Paths.get(jsonFileName)) + writeBinarySnapshot(snapshot);
+
+        if (event != null) event.end();
+
+        metrics.record(Operation.SNAPSHOT, start);
+        metrics.addBytesWritten(bytes);
+
+        if (event != null && event.shouldCommit())
+        {
+            event.kind = CarPersistEvent.SNAPSHOT;
+            event.cars = snapshot.size();
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * It writes the binary copy of the snapshot file, which has to hold the
+     * cars of the snapshot. A failed write only costs a slower next start.
+     *
+     * @return number of bytes written
+     */
+    private long writeBinarySnapshot(final CarSnapshot snapshot)
+    {
+        Path jsonPath = Paths.get(jsonFileName);
+
+        if (!Files.isRegularFile(jsonPath)) return 0;
+
+        try
+        {
+            return CarSnapshotFile.write(snapshot, jsonPath);
+        }
+        catch (IOException e)
+        {
+            System.err.println("BINARY SNAPSHOT NOT WRITTEN: " + e);
+
+            return 0;
+        }
+    }
+
+    /**
+     * It reads the result from the cache or computes it.
+     */
+    private <V> V cached(final Operation operation, final CarSnapshot snapshot, final Supplier<V> loader,
+                         final Object... parameters)
+    {
+        return timed(operation, snapshot, () -> cache.get(snapshot.version(), loader, operation.name(), parameters),
+                     parameters);
+    }
+
+    /**
+     * It runs the query against the snapshot, records its latency and emits a
+     * {@link CarQueryEvent} carrying the version of that snapshot.
+     */
+    private <V> V timed(final Operation operation, final CarSnapshot snapshot, final Supplier<V> query,
+                        final Object... parameters)
+    {
+        CarQueryEvent event = FlightRecorder.isInitialized() ? new CarQueryEvent() : null;
+        long start = System.nanoTime();
+        V result = null;
+
+        if (event != null) event.begin();
+
+        try
+        {
+            result = query.get();
+
+            return result;
+        }
+        finally
+        {
+            metrics.record(operation, start);
+
+            if (event != null) event.end();
+
+            if (event != null && event.shouldCommit())
+            {
+                event.operation = operation.name();
+                event.parameters = Arrays.deepToString(parameters);
+                event.resultSize = resultSize(result);
+                event.datasetVersion = snapshot.version();
+                event.commit();
+            }
+        }
+    }
+
+    private void load(final Car car)
+    {
+        try
+        {
+            store.add(car);
+        }
+        catch (CustomException e)
+        {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private static List<Car> unmodifiable(final List<Car> cars)
+    {
+        return Collections.unmodifiableList(cars);
+    }
+
+    private static List<Car> materialize(final CarSnapshot snapshot, final int[] rows)
+    {
+        return snapshot.materialize(rows, rows.length);
+    }
+
+    private static List<Car> materialize(final CarSnapshot snapshot, final int[] rows, final Car[] cars)
+    {
+        List<Car> materialized = new ArrayList<>(rows.length);
+
+        for (int row : rows)
+        {
+            if (cars[row] == null) cars[row] = snapshot.materialize(row);
+
+            materialized.add(cars[row]);
+        }
+
+        return materialized;
+    }
+
+    private static int[] mileageGtRows(final CarSnapshot snapshot, final int mileage)
+    {
+        int[] rows = new int[snapshot.size()];
+        int count = 0;
+
+        for (int row = 0; row < rows.length; row++)
+        {
+            if (snapshot.mileage(row) > mileage) rows[count++] = row;
+        }
+
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static int resultSize(final Object result)
+    {
+        if (result == null) return 0;
+        if (result instanceof Collection) return ((Collection<?>) result).size();
+        if (result instanceof Map) return ((Map<?, ?>) result).size();
+        if (result instanceof int[]) return ((int[]) result).length;
+
+        return 1;
+    }
+
+    private static long fileSize(final Path path)
+    {
+        try
+        {
+            return Files.exists(path) ? Files.size(path) : 0;
+        }
+        catch (IOException e)
+        {
+            return 0;
+        }
+    }
+
+    private static int[] componentIds(final CarSnapshot snapshot, final Collection<String> components)
+    {
+        return components.stream().mapToInt(snapshot::componentId).toArray();
     }
 }
@@ -0,0 +1,267 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.models.Car;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Developed by Justyna Stachera on 17.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 18:26.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Immutable version of the {@link CarStore} rows. The store only appends to
+ * its columns and copies them when they grow, so a snapshot shares the column
+ * arrays and simply never reads past its own size. Snapshots can be queried
+ * from any number of threads without locking.
+ */
+class CarSnapshot
+{
+    private static final Colour[] COLOURS = Colour.values();
+
+    private final long version;
+    private final int size;
+    private final long[] prices;
+    private final int[] mileages;
+    private final byte[] colours;
+    private final int[] models;
+    private final int[] componentOffsets;
+    private final int[] componentIds;
+
+    private final StringDictionary modelDictionary;
+    private final StringDictionary componentDictionary;
+    private final PriceIndex priceIndex;
+    private final ComponentIndex componentIndex;
+    private final CarAggregates aggregates;
+    private final SortEngine sortEngine;
+
+    CarSnapshot(final long version, final int size, final long[] prices, final int[] mileages,
+                final byte[] colours, final int[] models, final int[] componentOffsets, final int[] componentIds,
+                final StringDictionary modelDictionary, final StringDictionary componentDictionary,
+                final PriceIndex priceIndex, final ComponentIndex componentIndex, final CarAggregates aggregates)
+    {
+        this.version = version;
+        this.size = size;
+        this.prices = prices;
+        this.mileages = mileages;
+        this.colours = colours;
+        this.models = models;
+        this.componentOffsets = componentOffsets;
+        this.componentIds = componentIds;
+        this.modelDictionary = modelDictionary;
+        this.componentDictionary = componentDictionary;
+        this.priceIndex = priceIndex;
+        this.componentIndex = componentIndex;
+        this.aggregates = aggregates;
+        this.sortEngine = new SortEngine(this);
+    }
+
+    /**
+     * It returns the dataset version, increased by every car added to the store.
+     *
+     * @return dataset version
+     */
+    long version()
+    {
+        return version;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    PriceIndex priceIndex()
+    {
+        return priceIndex;
+    }
+
+    SortEngine sortEngine()
+    {
+        return sortEngine;
+    }
+
+    CarAggregates aggregates()
+    {
+        return aggregates;
+    }
+
+    ComponentIndex componentIndex()
+    {
+        return componentIndex;
+    }
+
+    long price(final int row)
+    {
+        return prices[row];
+    }
+
+    int mileage(final int row)
+    {
+        return mileages[row];
+    }
+
+    int colour(final int row)
+    {
+        return colours[row];
+    }
+
+    int model(final int row)
+    {
+        return models[row];
+    }
+
+    String modelName(final int model)
+    {
+        return modelDictionary.decode(model);
+    }
+
+    String componentName(final int component)
+    {
+        return componentDictionary.decode(component);
+    }
+
+    /**
+     * It returns the id of the component or {@value StringDictionary#ABSENT} when no car has it.
+     *
+     * @param component component name
+     * @return component id
+     */
+    int componentId(final String component)
+    {
+        return componentDictionary.find(component);
+    }
+
+    /**
+     * It returns the id of the model or {@value StringDictionary#ABSENT} when no car has it.
+     *
+     * @param model model name
+     * @return model id
+     */
+    int modelId(final String model)
+    {
+        return modelDictionary.find(model);
+    }
+
+    /**
+     * It checks whether the car of the given row has the component.
+     *
+     * @param row       row number
+     * @param component component id
+     * @return true if the car has the component
+     */
+    boolean hasComponent(final int row, final int component)
+    {
+        for (int i = componentOffsets[row]; i < componentOffsets[row + 1]; i++)
+        {
+            if (componentIds[i] == component) return true;
+        }
+
+        return false;
+    }
+
+    int modelCount()
+    {
+        return modelDictionary.size();
+    }
+
+    int componentCount()
+    {
+        return componentDictionary.size();
+    }
+
+    /**
+     * It returns where the component ids of the row start, {@code componentOffset(row + 1)}
+     * is where they end.
+     *
+     * @param row row number, up to the size
+     * @return offset into the component ids
+     */
+    int componentOffset(final int row)
+    {
+        return componentOffsets[row];
+    }
+
+    int componentAt(final int offset)
+    {
+        return componentIds[offset];
+    }
+
+    /**
+     * It creates a {@link Car} object for the given row.
+     *
+     * @param row row number
+     * @return {@link Car} object
+     */
+    Car materialize(final int row)
+    {
+        List<String> components = new ArrayList<>(componentOffsets[row + 1] - componentOffsets[row]);
+
+        for (int i = componentOffsets[row]; i < componentOffsets[row + 1]; i++)
+        {
+            components.add(componentDictionary.decode(componentIds[i]));
+        }
+
+        return new Car(modelDictionary.decode(models[row]),
+                       prices[row],
+                       COLOURS[colours[row]],
+                       mileages[row],
+                       components);
+    }
+
+    List<Car> materialize(final int[] rows, final int count)
+    {
+        List<Car> cars = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            cars.add(materialize(rows[i]));
+        }
+
+        return cars;
+    }
+
+    /**
+     * It returns an iterator creating the {@link Car} objects one at a time,
+     * e.g. for streaming all cars to a file.
+     *
+     * @return {@link Car} iterator
+     */
+    Iterator<Car> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int row;
+
+            @Override
+            public boolean hasNext()
+            {
+                return row < size;
+            }
+
+            @Override
+            public Car next()
+            {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                return materialize(row++);
+            }
+        };
+    }
+
+    List<Car> materializeAll()
+    {
+        List<Car> cars = new ArrayList<>(size);
+
+        for (int row = 0; row < size; row++)
+        {
+            cars.add(materialize(row));
+        }
+
+        return cars;
+    }
+}
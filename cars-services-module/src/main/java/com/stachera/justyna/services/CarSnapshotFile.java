@@ -0,0 +1,260 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Developed by Justyna Stachera on 27.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 20:46.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Binary copy of the {@link CarStore} columns written next to the JSON
+ * snapshot file as {@code <file>.bin}. The header records the size,
+ * modification time and CRC32 of the JSON file it was built from; the file is
+ * only read while all three match, so a changed JSON file is parsed again and
+ * the binary copy rebuilt. The file is memory-mapped and the columns are
+ * copied in bulk, without creating {@link com.stachera.justyna.models.models.Car}
+ * objects or parsing prices. A CRC32 of the whole file guards against torn
+ * or damaged files.
+ *
+ * Layout, big-endian: magic, format version, JSON size, JSON modification
+ * time, JSON CRC32, colour names, model names, component names, row count,
+ * component id count, the price, mileage, colour, model and
+ * component offset columns, the component ids and the CRC32 of all preceding bytes.
+ */
+class CarSnapshotFile
+{
+    static final String SUFFIX = ".bin";
+
+    private static final int MAGIC = 0x43415253;
+    private static final int FORMAT_VERSION = 2;
+    private static final Colour[] COLOURS = Colour.values();
+
+    private CarSnapshotFile()
+    {
+    }
+
+    static Path binaryPath(final Path jsonPath)
+    {
+        return jsonPath.resolveSibling(jsonPath.getFileName() + SUFFIX);
+    }
+
+    /**
+     * It loads the binary copy of the JSON file into the empty store.
+     *
+     * @param jsonPath JSON snapshot file
+     * @param store    empty store
+     * @return true if the store has been loaded, false if the binary copy is
+     * missing, out of date or damaged and the JSON file has to be parsed
+     */
+    static boolean read(final Path jsonPath, final CarStore store)
+    {
+        Path binaryPath = binaryPath(jsonPath);
+
+        if (!Files.isRegularFile(binaryPath) || !Files.isRegularFile(jsonPath)) return false;
+
+        try (FileChannel channel = FileChannel.open(binaryPath))
+        {
+            if (channel.size() > Integer.MAX_VALUE || channel.size() < Long.BYTES) return false;
+
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer buffer = file.duplicate();
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) return false;
+
+            if (buffer.getLong() != Files.size(jsonPath) ||
+                buffer.getLong() != Files.getLastModifiedTime(jsonPath).toMillis() ||
+                buffer.getLong() != checksum(jsonPath))
+            {
+                return false;
+            }
+
+            if (!isIntact(file))
+            {
+                System.err.println("DAMAGED BINARY SNAPSHOT: " + binaryPath);
+                return false;
+            }
+
+            String[] colourNames = readStrings(buffer);
+
+            if (colourNames.length != COLOURS.length) return false;
+
+            for (int colour = 0; colour < COLOURS.length; colour++)
+            {
+                if (!COLOURS[colour].name().equals(colourNames[colour])) return false;
+            }
+
+            String[] modelNames = readStrings(buffer);
+            String[] componentNames = readStrings(buffer);
+            int rows = buffer.getInt();
+            int componentIdCount = buffer.getInt();
+
+            long[] prices = new long[rows];
+            int[] mileages = new int[rows];
+            byte[] colours = new byte[rows];
+            int[] models = new int[rows];
+            int[] componentOffsets = new int[rows + 1];
+            int[] componentIds = new int[componentIdCount];
+
+            buffer.asLongBuffer().get(prices);
+            buffer.position(buffer.position() + rows * Long.BYTES);
+            buffer.asIntBuffer().get(mileages);
+            buffer.position(buffer.position() + rows * Integer.BYTES);
+            buffer.get(colours);
+            buffer.asIntBuffer().get(models);
+            buffer.position(buffer.position() + rows * Integer.BYTES);
+            buffer.asIntBuffer().get(componentOffsets);
+            buffer.position(buffer.position() + (rows + 1) * Integer.BYTES);
+            buffer.asIntBuffer().get(componentIds);
+
+            store.load(modelNames, componentNames, rows, prices, mileages, colours, models, componentOffsets,
+                       componentIds);
+
+            return true;
+        }
+        catch (IOException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e)
+        {
+            System.err.println("BINARY SNAPSHOT NOT READ: " + e);
+
+            return false;
+        }
+    }
+
+    /**
+     * It writes the binary copy of the snapshot, which has to hold exactly
+     * the cars of the JSON file. The copy is synced and then replaces the
+     * previous one atomically.
+     *
+     * @param snapshot cars of the JSON file
+     * @param jsonPath JSON snapshot file
+     * @return number of bytes written
+     * @throws IOException when the file cannot be written
+     */
+    static long write(final CarSnapshot snapshot, final Path jsonPath) throws IOException
+    {
+        Path binaryPath = binaryPath(jsonPath);
+        Path temporaryPath = binaryPath.resolveSibling(binaryPath.getFileName() + ".tmp");
+        int rows = snapshot.size();
+        CRC32 crc = new CRC32();
+
+        try (FileOutputStream file = new FileOutputStream(temporaryPath.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc),
+                                                                                  1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(Files.size(jsonPath));
+            out.writeLong(Files.getLastModifiedTime(jsonPath).toMillis());
+            out.writeLong(checksum(jsonPath));
+
+            out.writeInt(COLOURS.length);
+
+            for (Colour colour : COLOURS) writeString(out, colour.name());
+
+            out.writeInt(snapshot.modelCount());
+
+            for (int model = 0; model < snapshot.modelCount(); model++) writeString(out, snapshot.modelName(model));
+
+            out.writeInt(snapshot.componentCount());
+
+            for (int component = 0; component < snapshot.componentCount(); component++)
+            {
+                writeString(out, snapshot.componentName(component));
+            }
+
+            out.writeInt(rows);
+            out.writeInt(snapshot.componentOffset(rows));
+
+            for (int row = 0; row < rows; row++) out.writeLong(snapshot.price(row));
+            for (int row = 0; row < rows; row++) out.writeInt(snapshot.mileage(row));
+            for (int row = 0; row < rows; row++) out.writeByte(snapshot.colour(row));
+            for (int row = 0; row < rows; row++) out.writeInt(snapshot.model(row));
+            for (int row = 0; row <= rows; row++) out.writeInt(snapshot.componentOffset(row));
+
+            for (int offset = 0; offset < snapshot.componentOffset(rows); offset++)
+            {
+                out.writeInt(snapshot.componentAt(offset));
+            }
+
+            out.flush();
+            out.writeLong(crc.getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+
+        Files.move(temporaryPath, binaryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return Files.size(binaryPath);
+    }
+
+    /**
+     * It compares the trailing CRC32 with the CRC32 of all preceding bytes.
+     */
+    private static boolean isIntact(final ByteBuffer file)
+    {
+        ByteBuffer content = file.duplicate();
+        int end = content.limit() - Long.BYTES;
+        CRC32 crc = new CRC32();
+
+        content.limit(end);
+        crc.update(content);
+
+        return crc.getValue() == file.getLong(end);
+    }
+
+    private static long checksum(final Path path) throws IOException
+    {
+        CRC32 crc = new CRC32();
+
+        try (FileChannel channel = FileChannel.open(path))
+        {
+            long size = channel.size();
+
+            for (long position = 0; position < size; position += Integer.MAX_VALUE)
+            {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                       Math.min(Integer.MAX_VALUE, size - position)));
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String[] readStrings(final ByteBuffer buffer)
+    {
+        String[] values = new String[buffer.getInt()];
+
+        for (int i = 0; i < values.length; i++)
+        {
+            byte[] bytes = new byte[buffer.getInt()];
+
+            buffer.get(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,317 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.exceptions.CustomException;
+import com.stachera.justyna.exceptions.ExceptionCode;
+import com.stachera.justyna.models.models.Car;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Developed by Justyna Stachera on 04.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:05.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Column oriented {@link Car} storage. Every car is a row spread over primitive
+ * columns: price as a fixed-point long, mileage as an int, colour as a byte
+ * ordinal and model and components as dictionary ids. The store is written by
+ * a single thread at a time and read through {@link #snapshot()}. Rows are
+ * hashed from the column values, so the hashes do not depend on the JVM run
+ * and the store can be rebuilt from columns, see {@link #load}.
+ */
+class CarStore
+{
+    static final int PRICE_SCALE = Car.PRICE_SCALE;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final StringDictionary modelDictionary = new StringDictionary();
+    private final StringDictionary componentDictionary = new StringDictionary();
+    private final PriceIndex priceIndex = new PriceIndex();
+    private final ComponentIndex componentIndex = new ComponentIndex();
+    private final CarAggregates aggregates = new CarAggregates();
+
+    private int size;
+    private long version;
+    private long[] prices = new long[INITIAL_CAPACITY];
+    private int[] mileages = new int[INITIAL_CAPACITY];
+    private byte[] colours = new byte[INITIAL_CAPACITY];
+    private int[] models = new int[INITIAL_CAPACITY];
+    private int[] componentOffsets = new int[INITIAL_CAPACITY + 1];
+    private int[] componentIds = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+
+    // open addressing table of row + 1 used to reject duplicated cars
+    private int[] rowTable = new int[INITIAL_CAPACITY * 2];
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * It adds the {@link Car} as a new row unless an equal car is already stored.
+     *
+     * @param car {@link Car} to add
+     * @return true if the row has been added
+     */
+    boolean add(final Car car)
+    {
+        validate(car);
+
+        long price = car.getPriceInMinorUnits();
+        int hash = rowHash(car.getModel().hashCode(), price, car.getColour().ordinal(), car.getMileage(),
+                           car.getComponents().hashCode());
+        int slot = findSlot(car, price, hash);
+
+        if (rowTable[slot] != 0) return false;
+
+        ensureCapacity(size + 1, car.getComponents().size());
+
+        int row = size;
+
+        prices[row] = price;
+        mileages[row] = car.getMileage();
+        colours[row] = (byte) car.getColour().ordinal();
+        models[row] = modelDictionary.encode(car.getModel());
+        hashes[row] = hash;
+
+        int offset = componentOffsets[row];
+
+        for (String componentName : car.getComponents())
+        {
+            int component = componentDictionary.encode(componentName);
+
+            componentIds[offset++] = component;
+            componentIndex.add(component, row);
+        }
+
+        componentOffsets[row + 1] = offset;
+        rowTable[slot] = row + 1;
+        priceIndex.add(row, price);
+        aggregates.add(row, models[row], price, mileages[row], colours[row]);
+        size++;
+        version++;
+
+        if (size * 2 > rowTable.length) rehash(rowTable.length * 2);
+
+        return true;
+    }
+
+    /**
+     * It fills the empty store with rows read back from columns, e.g. from a
+     * {@link CarSnapshotFile}. The rows are trusted to be valid and distinct.
+     * The dictionaries are given in id order and the arrays are taken over.
+     *
+     * @param modelNames       model dictionary
+     * @param componentNames   component dictionary
+     * @param rows             number of rows
+     * @param prices           fixed-point prices
+     * @param mileages         mileages
+     * @param colours          colour ordinals
+     * @param models           model ids
+     * @param componentOffsets offsets of the components of every row, rows + 1 values
+     * @param componentIds     component ids
+     */
+    void load(final String[] modelNames, final String[] componentNames, final int rows, final long[] prices,
+              final int[] mileages, final byte[] colours, final int[] models, final int[] componentOffsets,
+              final int[] componentIds)
+    {
+        if (size != 0) throw new IllegalStateException("STORE IS NOT EMPTY");
+
+        int[] componentHashes = new int[componentNames.length];
+
+        for (String model : modelNames) modelDictionary.encode(model);
+
+        for (int component = 0; component < componentNames.length; component++)
+        {
+            componentDictionary.encode(componentNames[component]);
+            componentHashes[component] = componentNames[component].hashCode();
+        }
+
+        this.prices = prices;
+        this.mileages = mileages;
+        this.colours = colours;
+        this.models = models;
+        this.componentOffsets = componentOffsets;
+        this.componentIds = componentIds;
+        this.hashes = new int[rows];
+
+        for (int row = 0; row < rows; row++)
+        {
+            // the same hash as List.hashCode() of the component names
+            int componentsHash = 1;
+
+            for (int i = componentOffsets[row]; i < componentOffsets[row + 1]; i++)
+            {
+                componentsHash = 31 * componentsHash + componentHashes[componentIds[i]];
+                componentIndex.add(componentIds[i], row);
+            }
+
+            String modelName = modelNames[models[row]];
+
+            hashes[row] = rowHash(modelName.hashCode(), prices[row], colours[row], mileages[row], componentsHash);
+            priceIndex.add(row, prices[row]);
+            aggregates.add(row, models[row], prices[row], mileages[row], colours[row]);
+        }
+
+        size = rows;
+        version = rows;
+
+        int capacity = rowTable.length;
+
+        while (size * 2 > capacity) capacity *= 2;
+
+        rehash(capacity);
+    }
+
+    /**
+     * It publishes the rows added so far as an immutable {@link CarSnapshot}.
+     * Later additions never modify what a snapshot can see.
+     *
+     * @return {@link CarSnapshot} of the current rows
+     */
+    CarSnapshot snapshot()
+    {
+        return new CarSnapshot(version, size, prices, mileages, colours, models, componentOffsets, componentIds,
+                               modelDictionary.snapshot(), componentDictionary.snapshot(), priceIndex.snapshot(),
+                               componentIndex.snapshot(), aggregates.snapshot());
+    }
+
+    /**
+     * It converts a price bound into the fixed-point representation, rounding
+     * it towards the inside of the range and saturating values out of range.
+     *
+     * @param price        price bound
+     * @param roundingMode {@link RoundingMode#CEILING} for lower and {@link RoundingMode#FLOOR} for upper bounds
+     * @return bound in minor units
+     */
+    static long toFixedPointBound(final BigDecimal price, final RoundingMode roundingMode)
+    {
+        BigDecimal minor = price.setScale(PRICE_SCALE, roundingMode).movePointRight(PRICE_SCALE);
+
+        if (minor.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) return Long.MAX_VALUE;
+        if (minor.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0) return Long.MIN_VALUE;
+
+        return minor.longValueExact();
+    }
+
+    static BigDecimal fromFixedPoint(final long price)
+    {
+        return Car.fromMinorUnits(price);
+    }
+
+    private void validate(final Car car)
+    {
+        if (car.getModel() == null || car.getPrice() == null || car.getColour() == null ||
+            car.getMileage() == null || car.getComponents() == null || car.getComponents().contains(null))
+        {
+            throw new CustomException(ExceptionCode.CODE_250, "MISSING FIELD: " + car);
+        }
+
+        if (car.getPriceInMinorUnits() == Car.NO_PRICE)
+        {
+            throw new CustomException(ExceptionCode.CODE_250, "PRICE PRECISION: " + car.getPrice());
+        }
+    }
+
+    private int findSlot(final Car car, final long price, final int hash)
+    {
+        int mask = rowTable.length - 1;
+        int slot = mix(hash) & mask;
+
+        while (rowTable[slot] != 0)
+        {
+            int row = rowTable[slot] - 1;
+
+            if (hashes[row] == hash && rowEquals(row, car, price)) break;
+
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private boolean rowEquals(final int row, final Car car, final long price)
+    {
+        if (mileages[row] != car.getMileage() ||
+            colours[row] != car.getColour().ordinal() ||
+            models[row] != modelDictionary.find(car.getModel()) ||
+            prices[row] != price)
+        {
+            return false;
+        }
+
+        List<String> components = car.getComponents();
+
+        if (componentOffsets[row + 1] - componentOffsets[row] != components.size()) return false;
+
+        for (int i = 0; i < components.size(); i++)
+        {
+            if (componentIds[componentOffsets[row] + i] != componentDictionary.find(components.get(i))) return false;
+        }
+
+        return true;
+    }
+
+    private void rehash(final int capacity)
+    {
+        rowTable = new int[capacity];
+
+        int mask = rowTable.length - 1;
+
+        for (int row = 0; row < size; row++)
+        {
+            int slot = mix(hashes[row]) & mask;
+
+            while (rowTable[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            rowTable[slot] = row + 1;
+        }
+    }
+
+    private void ensureCapacity(final int rows, final int components)
+    {
+        if (rows > prices.length)
+        {
+            int capacity = Math.max(rows, prices.length * 2);
+
+            prices = Arrays.copyOf(prices, capacity);
+            mileages = Arrays.copyOf(mileages, capacity);
+            colours = Arrays.copyOf(colours, capacity);
+            models = Arrays.copyOf(models, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            componentOffsets = Arrays.copyOf(componentOffsets, capacity + 1);
+        }
+
+        int requiredComponents = componentOffsets[size] + components;
+
+        if (requiredComponents > componentIds.length)
+        {
+            componentIds = Arrays.copyOf(componentIds, Math.max(requiredComponents, componentIds.length * 2));
+        }
+    }
+
+    private static int rowHash(final int modelHash, final long price, final int colour, final int mileage,
+                               final int componentsHash)
+    {
+        int hash = modelHash;
+
+        hash = 31 * hash + Long.hashCode(price);
+        hash = 31 * hash + colour;
+        hash = 31 * hash + mileage;
+
+        return 31 * hash + componentsHash;
+    }
+
+    private static int mix(final int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+}
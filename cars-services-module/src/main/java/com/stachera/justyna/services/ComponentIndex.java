@@ -0,0 +1,230 @@
+package com.stachera.justyna.services;
+
+import java.util.Arrays;
+
+/**
+ * Developed by Justyna Stachera on 08.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 19:37.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Inverted index from component id to the ascending list of rows having
+ * that component (posting list). The posting lists and their sizes are kept
+ * in segments of {@value #SEGMENT_SIZE} components. A snapshot shares the
+ * segments and the index copies a segment before it first changes it after
+ * the snapshot, so publishing an added row copies only the segments of its
+ * components.
+ */
+class ComponentIndex
+{
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int SEGMENT_SHIFT = 6;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int[] EMPTY = new int[0];
+
+    private int[][][] postingSegments = new int[1][][];
+    private int[][] sizeSegments = new int[1][];
+    private int[] segmentGenerations = new int[1];
+    private int generation;
+    private int componentCount;
+
+    ComponentIndex()
+    {
+    }
+
+    private ComponentIndex(final int[][][] postingSegments, final int[][] sizeSegments, final int componentCount)
+    {
+        this.postingSegments = postingSegments;
+        this.sizeSegments = sizeSegments;
+        this.componentCount = componentCount;
+    }
+
+    /**
+     * It registers the row under the given component. Rows have to be added
+     * in ascending order.
+     *
+     * @param component component id
+     * @param row       row number
+     */
+    void add(final int component, final int row)
+    {
+        int segment = component >>> SEGMENT_SHIFT;
+        int index = component & SEGMENT_MASK;
+
+        if (segment >= postingSegments.length)
+        {
+            int capacity = Math.max(segment + 1, postingSegments.length * 2);
+
+            postingSegments = Arrays.copyOf(postingSegments, capacity);
+            sizeSegments = Arrays.copyOf(sizeSegments, capacity);
+            segmentGenerations = Arrays.copyOf(segmentGenerations, capacity);
+        }
+
+        if (postingSegments[segment] == null)
+        {
+            postingSegments[segment] = new int[SEGMENT_SIZE][];
+            sizeSegments[segment] = new int[SEGMENT_SIZE];
+            segmentGenerations[segment] = generation;
+        }
+        else if (segmentGenerations[segment] != generation)
+        {
+            // the segment is shared with a snapshot
+            postingSegments[segment] = postingSegments[segment].clone();
+            sizeSegments[segment] = sizeSegments[segment].clone();
+            segmentGenerations[segment] = generation;
+        }
+
+        componentCount = Math.max(componentCount, component + 1);
+
+        int[][] postings = postingSegments[segment];
+        int[] posting = postings[index];
+        int size = sizeSegments[segment][index];
+
+        if (posting == null)
+        {
+            posting = postings[index] = new int[INITIAL_CAPACITY];
+        }
+        else if (size > 0 && posting[size - 1] == row)
+        {
+            return;
+        }
+        else if (size == posting.length)
+        {
+            posting = postings[index] = Arrays.copyOf(posting, size * 2);
+        }
+
+        posting[size] = row;
+        sizeSegments[segment][index] = size + 1;
+    }
+
+    /**
+     * It returns a read-only view of the index. Posting lists are only appended
+     * past the sizes captured by the view and segments are copied before they
+     * change, so both can be shared with it.
+     *
+     * @return index view
+     */
+    ComponentIndex snapshot()
+    {
+        generation++;
+
+        return new ComponentIndex(postingSegments.clone(), sizeSegments.clone(), componentCount);
+    }
+
+    int componentCount()
+    {
+        return componentCount;
+    }
+
+    int postingSize(final int component)
+    {
+        if (component < 0 || component >= componentCount) return 0;
+
+        int[] sizes = sizeSegments[component >>> SEGMENT_SHIFT];
+
+        return sizes == null ? 0 : sizes[component & SEGMENT_MASK];
+    }
+
+    int[] postings(final int component)
+    {
+        int size = postingSize(component);
+
+        return size == 0 ? EMPTY : Arrays.copyOf(posting(component), size);
+    }
+
+    private int[] posting(final int component)
+    {
+        return postingSegments[component >>> SEGMENT_SHIFT][component & SEGMENT_MASK];
+    }
+
+    /**
+     * It returns the rows having all given components, intersecting the posting
+     * lists from the shortest one.
+     *
+     * @param components component ids
+     * @return ascending rows
+     */
+    int[] all(final int[] components)
+    {
+        if (components.length == 0) return EMPTY;
+
+        for (int component : components)
+        {
+            if (component < 0 || postingSize(component) == 0) return EMPTY;
+        }
+
+        Integer[] bySize = Arrays.stream(components).boxed().toArray(Integer[]::new);
+        Arrays.sort(bySize, (c1, c2) -> Integer.compare(postingSize(c1), postingSize(c2)));
+
+        int[] result = postings(bySize[0]);
+        int resultSize = result.length;
+
+        for (int i = 1; i < bySize.length && resultSize > 0; i++)
+        {
+            int[] posting = posting(bySize[i]);
+            int postingSize = postingSize(bySize[i]);
+            int j = 0;
+            int k = 0;
+            int size = 0;
+
+            while (j < resultSize && k < postingSize)
+            {
+                if (result[j] < posting[k]) j++;
+                else if (result[j] > posting[k]) k++;
+                else
+                {
+                    result[size++] = result[j];
+                    j++;
+                    k++;
+                }
+            }
+
+            resultSize = size;
+        }
+
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    /**
+     * It returns the rows having at least one of the given components, merging
+     * the posting lists.
+     *
+     * @param components component ids
+     * @return ascending rows
+     */
+    int[] any(final int[] components)
+    {
+        int[] result = EMPTY;
+
+        for (int component : components)
+        {
+            if (component < 0 || postingSize(component) == 0) continue;
+
+            int[] posting = posting(component);
+            int postingSize = postingSize(component);
+            int[] merged = new int[result.length + postingSize];
+            int j = 0;
+            int k = 0;
+            int size = 0;
+
+            while (j < result.length && k < postingSize)
+            {
+                if (result[j] < posting[k]) merged[size++] = result[j++];
+                else if (result[j] > posting[k]) merged[size++] = posting[k++];
+                else
+                {
+                    merged[size++] = result[j++];
+                    k++;
+                }
+            }
+
+            while (j < result.length) merged[size++] = result[j++];
+            while (k < postingSize) merged[size++] = posting[k++];
+
+            result = Arrays.copyOf(merged, size);
+        }
+
+        return result;
+    }
+}
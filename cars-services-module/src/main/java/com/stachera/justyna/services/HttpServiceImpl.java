@@ -0,0 +1,358 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.exceptions.CustomException;
+import com.stachera.justyna.json.JsonMapper;
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.enums.Criterion;
+import com.stachera.justyna.models.models.Car;
+import com.stachera.justyna.models.models.CarValidator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Developed by Justyna Stachera on 18.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:04.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * HTTP front end of {@link CarService} built on the JDK HTTP server. The
+ * server binds to the loopback address unless another bind address is given,
+ * as the requests are not authenticated.
+ * Every request runs on its own virtual thread when the runtime supports them
+ * and on a cached thread pool otherwise. Responses are written as JSON
+ * straight to the connection. All cars and sorted cars without a limit are
+ * streamed from a {@link ResultCursor} one car at a time; the other results
+ * are computed first. Once the headers of a response are sent its status
+ * cannot change, so a failure while writing the body only cuts it short.
+ *
+ * GET  /cars                                 all cars
+ * POST /cars                                 add the car given as JSON body, validated
+ *                                            with the {@link CarValidator} rules; 201 when
+ *                                            added, 409 when an equal car is already stored
+ * GET  /cars/sort?keys=MODEL,PRICE DESC&amp;offset=0&amp;limit=10
+ * GET  /cars/statistics                      mileage and price statistics
+ * GET  /cars/mileage?gt=1000                 cars which mileage is greater
+ * GET  /cars/price?min=100&amp;max=200           cars which price is between
+ * GET  /cars/colours                         car amount by colour
+ * GET  /cars/components                      component - cars map
+ * GET  /cars/query?colour=B2&amp;minPrice=100&amp;maxPrice=500&amp;mileageGt=10000&amp;components=BLUETOOTH
+ *      &amp;keys=PRICE DESC&amp;limit=20           cars matching all given predicates, also model,
+ *                                            mileageLt and offset; explain=true returns the plan
+ * GET  /cars/cache                           result cache hit, miss and eviction counters
+ */
+public class HttpServiceImpl
+{
+    private static final String CONTEXT = "/cars";
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final int BACKLOG = 4096;
+
+    private final CarService carService;
+    private final JsonMapper jsonMapper = new JsonMapper();
+
+    @FunctionalInterface
+    private interface BodyWriter
+    {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * It serves the cars on the loopback address.
+     *
+     * @param filePath project relative file path
+     * @param port     port to listen on
+     */
+    public static void run(final String filePath, final int port)
+    {
+        run(filePath, InetAddress.getLoopbackAddress().getHostAddress(), port);
+    }
+
+    /**
+     * It serves the cars on the given address, e.g. 0.0.0.0 for all interfaces.
+     *
+     * @param filePath    project relative file path
+     * @param bindAddress host name or address to bind to
+     * @param port        port to listen on
+     */
+    public static void run(final String filePath, final String bindAddress, final int port)
+    {
+        new HttpServiceImpl(filePath, bindAddress, port);
+    }
+
+    private HttpServiceImpl(final String filePath, final String bindAddress, final int port)
+    {
+        carService = CarService.open(filePath);
+
+        try
+        {
+            HttpServer server = HttpServer.create(new InetSocketAddress(bindAddress, port), BACKLOG);
+            ExecutorService executor = newExecutor();
+
+            server.createContext(CONTEXT, this::handle);
+            server.setExecutor(executor);
+            server.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+            {
+                server.stop(0);
+                executor.shutdown();
+                carService.close();
+            }));
+
+            System.out.println("Listening on " + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+        }
+        catch (IOException e)
+        {
+            System.err.println(e);
+        }
+    }
+
+    /**
+     * It returns a virtual thread per task executor when the runtime provides one.
+     * The project is compiled for Java 11, so the factory is looked up reflectively.
+     */
+    private static ExecutorService newExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            String path = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (path.isEmpty() || path.equals("/"))
+            {
+                if (method.equals("GET")) respond(exchange, 200, carService.getCarsCursor().iterator(0));
+                else if (method.equals("POST")) addNewCar(exchange);
+                else respondError(exchange, 405, "METHOD NOT ALLOWED");
+            }
+            else if (!method.equals("GET"))
+            {
+                respondError(exchange, 405, "METHOD NOT ALLOWED");
+            }
+            else
+            {
+                switch (path)
+                {
+                    case "/sort":
+                        sort(exchange, params);
+                        break;
+                    case "/statistics":
+                        respond(exchange, 200, Collections.singletonMap("statistics", carService.getStatistics()));
+                        break;
+                    case "/mileage":
+                        respond(exchange, 200, carService.getCarsIfMileageGt(Integer.valueOf(required(params, "gt"))));
+                        break;
+                    case "/price":
+                        respond(exchange, 200, carService.getCarsPriceBetween(new BigDecimal(required(params, "min")),
+                                                                               new BigDecimal(required(params, "max"))));
+                        break;
+                    case "/colours":
+                        respond(exchange, 200, carService.getCarAmountByColour());
+                        break;
+                    case "/components":
+                        respond(exchange, 200, carService.getComponentCarsMap());
+                        break;
+                    case "/query":
+                        query(exchange, params);
+                        break;
+                    case "/cache":
+                        respond(exchange, 200, Collections.singletonMap("cache", carService.getCacheStatistics()));
+                        break;
+                    default:
+                        respondError(exchange, 404, "NOT FOUND");
+                }
+            }
+        }
+        catch (IllegalArgumentException | CustomException e)
+        {
+            respondError(exchange, 400, e.getMessage());
+        }
+        catch (RuntimeException e)
+        {
+            System.err.println(e);
+            respondError(exchange, 500, "INTERNAL ERROR");
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    private void addNewCar(final HttpExchange exchange) throws IOException
+    {
+        Car car;
+
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))
+        {
+            car = jsonMapper.read(reader, Car.class);
+        }
+
+        if (car == null) throw new IllegalArgumentException("EMPTY BODY");
+
+        if (carService.addNewCar(CarValidator.check(car))) respond(exchange, 201, car);
+        else respondError(exchange, 409, "CAR ALREADY EXISTS");
+    }
+
+    private void query(final HttpExchange exchange, final Map<String, String> params) throws IOException
+    {
+        CarQuery query = parseCarQuery(params);
+
+        if (Boolean.parseBoolean(params.get("explain")))
+        {
+            respond(exchange, 200, Collections.singletonMap("plan", carService.explain(query)));
+        }
+        else
+        {
+            respond(exchange, 200, carService.query(query));
+        }
+    }
+
+    private static CarQuery parseCarQuery(final Map<String, String> params)
+    {
+        CarQuery.CarQueryBuilder builder = CarQuery.builder();
+
+        if (params.containsKey("model")) builder.model(params.get("model").split(","));
+
+        if (params.containsKey("colour"))
+        {
+            builder.colour(Arrays.stream(params.get("colour").split(",")).map(String::trim).map(String::toUpperCase)
+                                   .map(Colour::valueOf).toArray(Colour[]::new));
+        }
+
+        if (params.containsKey("minPrice")) builder.priceMin(new BigDecimal(params.get("minPrice")));
+        if (params.containsKey("maxPrice")) builder.priceMax(new BigDecimal(params.get("maxPrice")));
+        if (params.containsKey("mileageGt")) builder.mileageGreaterThan(Integer.parseInt(params.get("mileageGt")));
+        if (params.containsKey("mileageLt")) builder.mileageLowerThan(Integer.parseInt(params.get("mileageLt")));
+        if (params.containsKey("components")) builder.withComponents(params.get("components").split(","));
+
+        if (params.containsKey("keys"))
+        {
+            for (String key : params.get("keys").split(",")) builder.orderBy(SortKey.valueOf(key));
+        }
+
+        if (params.containsKey("offset")) builder.offset(Integer.parseInt(params.get("offset")));
+        if (params.containsKey("limit")) builder.limit(Integer.parseInt(params.get("limit")));
+
+        return builder.build();
+    }
+
+    private void sort(final HttpExchange exchange, final Map<String, String> params) throws IOException
+    {
+        String keysParam = params.get("keys");
+        List<SortKey> keys = new ArrayList<>();
+
+        if (keysParam == null)
+        {
+            keys.add(new SortKey(Criterion.valueOf(required(params, "criterion").toUpperCase()),
+                                 Boolean.parseBoolean(params.get("desc"))));
+        }
+        else
+        {
+            for (String key : keysParam.split(",")) keys.add(SortKey.valueOf(key));
+        }
+
+        int offset = params.containsKey("offset") ? Integer.parseInt(params.get("offset")) : 0;
+
+        if (params.containsKey("limit"))
+        {
+            // a page is selected with a bounded heap, see SortEngine
+            respond(exchange, 200, carService.sort(keys, offset, Integer.parseInt(params.get("limit"))));
+        }
+        else
+        {
+            SortEngine.checkPage(offset, 0);
+
+            respond(exchange, 200, carService.sortCursor(keys).iterator(offset));
+        }
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final Object body) throws IOException
+    {
+        respond(exchange, status, writer -> jsonMapper.write(body, writer));
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final Iterator<?> elements) throws IOException
+    {
+        respond(exchange, status, writer -> jsonMapper.writeArray(elements, writer));
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final BodyWriter body) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, 0);
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)))
+        {
+            body.write(writer);
+        }
+    }
+
+    /**
+     * The error is only sent while no headers have been sent, otherwise the
+     * exchange is just closed and the client gets a truncated body.
+     */
+    private void respondError(final HttpExchange exchange, final int status, final String message) throws IOException
+    {
+        if (exchange.getResponseCode() != -1)
+        {
+            System.err.println("RESPONSE ABORTED AFTER HEADERS: " + message);
+
+            return;
+        }
+
+        respond(exchange, status, Collections.singletonMap("error", message));
+    }
+
+    private static String required(final Map<String, String> params, final String name)
+    {
+        String value = params.get(name);
+
+        if (value == null) throw new IllegalArgumentException("MISSING PARAMETER: " + name);
+
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(final String query)
+    {
+        Map<String, String> params = new HashMap<>();
+
+        if (query == null || query.isEmpty()) return params;
+
+        for (String pair : query.split("&"))
+        {
+            int separator = pair.indexOf('=');
+
+            if (separator < 0) params.put(URLDecoder.decode(pair, StandardCharsets.UTF_8), "");
+            else params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+
+        return params;
+    }
+}
@@ -0,0 +1,37 @@
+package com.stachera.justyna.services;
+
+/**
+ * Developed by Justyna Stachera on 19.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 22:05.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Command line front end of {@link CarImporter}.
+ */
+public class ImportServiceImpl
+{
+    private boolean complete;
+
+    /**
+     * It imports the feed and prints the import report.
+     *
+     * @param filePath     project relative file path
+     * @param feedFileName JSON or CSV feed file name
+     * @return true if the whole feed has been read
+     */
+    public static boolean run(final String filePath, final String feedFileName)
+    {
+        return new ImportServiceImpl(filePath, feedFileName).complete;
+    }
+
+    private ImportServiceImpl(final String filePath, final String feedFileName)
+    {
+        try (CarService carService = CarService.open(filePath))
+        {
+            CarImporter.Report report = new CarImporter(carService).importFeed(feedFileName);
+
+            System.out.println(report);
+            complete = report.isComplete();
+        }
+    }
+}
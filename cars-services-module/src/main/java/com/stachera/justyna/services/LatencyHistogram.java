@@ -0,0 +1,190 @@
+package com.stachera.justyna.services;
+
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Developed by Justyna Stachera on 26.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:06.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Lock-free histogram of latencies in nanoseconds. Values below
+ * {@value #SUB_BUCKETS} are counted exactly, larger values fall into
+ * log-linear buckets: every power of two is split into {@value #SUB_BUCKETS}
+ * equal buckets, so a percentile is off by at most 1/{@value #SUB_BUCKETS}
+ * of its value. The buckets are striped like a {@link java.util.concurrent.atomic.LongAdder}:
+ * a fixed number of stripes, a power of two of at least twice the number of
+ * processors up to {@value #MAX_STRIPES}, is created on first use and threads
+ * are spread over them by a hash of their id, so concurrent recordings
+ * rarely update the same cache lines while memory stays bounded however many
+ * threads, e.g. virtual threads per request, record. Percentiles are computed
+ * from a sum of the buckets of all stripes.
+ */
+class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    // the slot after the buckets holds the sum of the latencies
+    private static final int SUM = BUCKETS;
+    private static final int MAX_STRIPES = 64;
+    private static final int STRIPES = Math.min(MAX_STRIPES,
+                                                Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1));
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    /**
+     * It records one latency, negative latencies are recorded as 0.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    void record(final long nanos)
+    {
+        long value = Math.max(0, nanos);
+        AtomicLongArray counts = stripe();
+
+        counts.incrementAndGet(bucket(value));
+        counts.addAndGet(SUM, value);
+    }
+
+    Snapshot snapshot()
+    {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+
+        for (int index = 0; index < STRIPES; index++)
+        {
+            AtomicLongArray stripe = stripes.get(index);
+
+            if (stripe == null) continue;
+
+            for (int bucket = 0; bucket < BUCKETS; bucket++)
+            {
+                counts[bucket] += stripe.get(bucket);
+            }
+
+            sum += stripe.get(SUM);
+        }
+
+        for (long bucketCount : counts)
+        {
+            count += bucketCount;
+        }
+
+        return new Snapshot(counts, count, sum);
+    }
+
+    private AtomicLongArray stripe()
+    {
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        int index = (int) (id >>> 32) & (STRIPES - 1);
+        AtomicLongArray stripe = stripes.get(index);
+
+        if (stripe == null)
+        {
+            stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS + 1));
+            stripe = stripes.get(index);
+        }
+
+        return stripe;
+    }
+
+    static int bucket(final long value)
+    {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(final int bucket)
+    {
+        if (bucket < SUB_BUCKETS) return bucket;
+
+        int group = bucket / SUB_BUCKETS;
+
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (group - 1);
+    }
+
+    /**
+     * It returns the middle of the bucket, the exact value for the exact buckets.
+     */
+    static long middle(final int bucket)
+    {
+        if (bucket < SUB_BUCKETS) return bucket;
+
+        long width = 1L << (bucket / SUB_BUCKETS - 1);
+
+        return lowerBound(bucket) + width / 2;
+    }
+
+    /**
+     * Latencies recorded up to one moment.
+     */
+    static class Snapshot
+    {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(final long[] counts, final long count, final long sum)
+        {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+
+        double getMean()
+        {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param quantile quantile between 0 and 1, e.g. 0.99
+         * @return latency in nanoseconds or 0 when nothing was recorded
+         */
+        long getPercentile(final double quantile)
+        {
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+
+            for (int bucket = 0; bucket < counts.length; bucket++)
+            {
+                seen += counts[bucket];
+
+                if (seen >= rank) return middle(bucket);
+            }
+
+            return 0;
+        }
+
+        long getMax()
+        {
+            for (int bucket = counts.length - 1; bucket >= 0; bucket--)
+            {
+                if (counts[bucket] > 0) return middle(bucket);
+            }
+
+            return 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return MessageFormat.format("count={0}, mean={1,number,0.0}us, p50={2,number,0.0}us, p99={3,number,0.0}us, "
+                                                + "p999={4,number,0.0}us, max={5,number,0.0}us",
+                                        count, getMean() / 1000, getPercentile(0.5) / 1000d,
+                                        getPercentile(0.99) / 1000d, getPercentile(0.999) / 1000d, getMax() / 1000d);
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package com.stachera.justyna.services;
 
+import com.stachera.justyna.exceptions.CustomException;
 import com.stachera.justyna.models.enums.Colour;
 import com.stachera.justyna.models.enums.Criterion;
 import com.stachera.justyna.models.models.Car;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * Developed by Justyna Stachera on 23.01.2019.
  * Package name: com.stachera.justyna.services
  * Last modified 21:25.
  * Copyright (c) 2019. All rights reserved.
+ *
+ * Results are shown a page at a time through one buffered writer which is
+ * flushed once per page. Large results come as a {@link ResultCursor}, so
+ * the first page shows up at once and only one page is held in memory.
  */
 public class MenuServiceImpl
 {
-    private CarServiceImpl carService;
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+
+    private CarService carService;
+    private int pageSize = ResultCursor.DEFAULT_PAGE_SIZE;
 
     public static void run(final String filePath)
     {
@@ -24,9 +40,23 @@ public class MenuServiceImpl
 
     private MenuServiceImpl(final String filePath)
     {
-        carService = new CarServiceImpl(filePath);
+        carService = CarService.open(filePath);
+
+        // cars still queued for persistence are written when the JVM is stopped, e.g. with Ctrl-C
+        Runtime.getRuntime().addShutdownHook(new Thread(carService::close));
 
-        runMenu();
+        try
+        {
+            runMenu();
+        }
+        catch (NoSuchElementException e)
+        {
+            // end of input
+        }
+        finally
+        {
+            carService.close();
+        }
     }
 
     private void runMenu()
@@ -47,34 +77,49 @@ public class MenuServiceImpl
                     addNewCar(sc);
                     break;
                 case "2":
-                    showData(carService.getCars());
+                    showData(carService.getCarsCursor(), sc);
                     break;
                 case "3":
-                    showData(sort(sc));
+                    showData(sort(sc), sc);
                     break;
                 case "4":
-                    showData(carService.getModelCarMap());
+                    showData(carService.getModelCarMap(), sc);
                     break;
                 case "5":
                     showData(carService.getStatistics());
                     break;
                 case "6":
-                    showData(carService.getTheHighestPriceCars());
+                    showData(ResultCursor.of(carService.getTheHighestPriceCars()), sc);
                     break;
                 case "7":
-                    showData(getCarsIfMileageGt(sc));
+                    showData(getCarsIfMileageGt(sc), sc);
                     break;
                 case "8":
-                    showData(carService.getCarAmountByColour());
+                    showData(carService.getCarAmountByColour(), sc);
                     break;
                 case "9":
-                    showData(carService.sortCarComponents());
+                    showData(carService.getCarsCursor(), sc);
                     break;
                 case "10":
-                    showData(carService.getComponentCarsMap());
+                    showData(carService.getComponentCarsMap(), sc);
                     break;
                 case "11":
-                    showData(getCarsByPriceBetween(sc));
+                    showData(getCarsByPriceBetween(sc), sc);
+                    break;
+                case "12":
+                    showData(ResultCursor.of(carService.getCarsWithAllComponents(readComponents(sc))), sc);
+                    break;
+                case "13":
+                    showData(ResultCursor.of(carService.getCarsWithAnyComponents(readComponents(sc))), sc);
+                    break;
+                case "14":
+                    showData(sortPage(sc), sc);
+                    break;
+                case "15":
+                    showData(carService.getCacheStatistics());
+                    break;
+                case "16":
+                    showData(carService.getMetrics().dump());
                     break;
                 case "x":
                     return;
@@ -86,29 +131,25 @@ public class MenuServiceImpl
         }
     }
 
-    private List<Car> getCarsIfMileageGt(Scanner sc)
+    private ResultCursor<Car> getCarsIfMileageGt(Scanner sc)
     {
-        List<Car> cars = new ArrayList<>();
-
         try {
 
             System.out.print("Insert boundary mileage: ");
             Integer mileage = Integer.valueOf(sc.nextLine());
             System.out.println();
 
-            cars.addAll(carService.getCarsIfMileageGt(mileage));
+            return carService.getCarsIfMileageGtCursor(mileage);
         } catch (IllegalArgumentException e)
         {
             System.err.println("\n" + e.getMessage());
         }
 
-        return cars;
+        return ResultCursor.of(Collections.emptyList());
     }
 
-    private List<Car> sort(Scanner sc)
+    private ResultCursor<Car> sort(Scanner sc)
     {
-        List<Car> cars = new ArrayList<>();
-
         try {
             System.out.println("Choose below criterion: ");
             Arrays.asList(Criterion.values()).forEach(System.out::println);
@@ -119,19 +160,40 @@ public class MenuServiceImpl
             boolean isDesc = sc.nextLine().equalsIgnoreCase("Y");
             System.out.println();
 
-            cars.addAll(carService.sort(criterion, isDesc));
+            return carService.sortCursor(Collections.singletonList(new SortKey(criterion, isDesc)));
         } catch (IllegalArgumentException e)
         {
             System.err.println("\n" + e.getMessage());
         }
 
-        return cars;
+        return ResultCursor.of(Collections.emptyList());
     }
 
-    private List<Car> getCarsByPriceBetween(Scanner sc)
+    private ResultCursor<Car> sortPage(Scanner sc)
     {
-        List<Car> cars = new ArrayList<>();
+        try {
+            System.out.print("Insert sort keys separate with comma (e.g. MODEL, PRICE DESC): ");
+            List<SortKey> keys = new ArrayList<>();
+            for (String key : sc.nextLine().split(",")) keys.add(SortKey.valueOf(key));
+
+            System.out.print("Insert offset: ");
+            int offset = Integer.parseInt(sc.nextLine());
+
+            System.out.print("Insert limit: ");
+            int limit = Integer.parseInt(sc.nextLine());
+            System.out.println();
 
+            return ResultCursor.of(carService.sort(keys, offset, limit));
+        } catch (IllegalArgumentException e)
+        {
+            System.err.println("\n" + e.getMessage());
+        }
+
+        return ResultCursor.of(Collections.emptyList());
+    }
+
+    private ResultCursor<Car> getCarsByPriceBetween(Scanner sc)
+    {
         try {
             System.out.print("Insert lower price: ");
             BigDecimal lowerPrice = new BigDecimal(sc.nextLine());
@@ -140,13 +202,22 @@ public class MenuServiceImpl
             BigDecimal upperPrice = new BigDecimal(sc.nextLine());
             System.out.println();
 
-            cars.addAll(carService.getCarsPriceBetween(lowerPrice, upperPrice));
+            return ResultCursor.of(carService.getCarsPriceBetween(lowerPrice, upperPrice));
         } catch (IllegalArgumentException e)
         {
             System.err.println("\n" + e.getMessage());
         }
 
-        return cars;
+        return ResultCursor.of(Collections.emptyList());
+    }
+
+    private List<String> readComponents(Scanner sc)
+    {
+        System.out.print("Insert components separate with comma: ");
+        List<String> components = new ArrayList<>(Arrays.asList(sc.nextLine().split(",")));
+        System.out.println();
+
+        return components;
     }
 
     private void addNewCar(Scanner sc)
@@ -177,26 +248,122 @@ public class MenuServiceImpl
                     .price(price)
                     .build();
 
-            carService.addNewCar(car);
-        } catch (IllegalArgumentException e)
+            if (!carService.addNewCar(car)) System.err.println("\nCAR ALREADY EXISTS");
+        } catch (IllegalArgumentException | CustomException e)
         {
             System.err.println("\n" + e.getMessage());
         }
     }
 
-        private void showData(String string)
+    private void showData(String string)
+    {
+        out.println(string);
+        out.flush();
+    }
+
+    private void showData(ResultCursor<?> cursor, Scanner sc)
+    {
+        showData(cursor, String::valueOf, sc);
+    }
+
+    private <K, V> void showData(Map<K, V> map, Scanner sc)
+    {
+        showData(ResultCursor.of(new ArrayList<>(map.entrySet())),
+                 entry -> entry.getKey() + " " + entry.getValue(), sc);
+    }
+
+    /**
+     * It shows the result page by page until the user goes back to the main menu.
+     */
+    private <T> void showData(ResultCursor<T> cursor, Function<? super T, String> formatter, Scanner sc)
+    {
+        if (cursor.size() == 0)
         {
-            System.out.println(string);
+            showData("No results");
+            return;
         }
 
-        private void showData(Collection<?> set)
+        cursor.setPageSize(pageSize);
+
+        List<T> page = cursor.next();
+
+        while (true)
         {
-            set.forEach(System.out::println);
+            if (page != null)
+            {
+                page.forEach(element -> out.println(formatter.apply(element)));
+                out.println();
+                out.printf("Results %d-%d of %d, page %d of %d%n", cursor.getPageStart() + 1,
+                           cursor.getPageStart() + page.size(), cursor.size(), cursor.getPage() + 1,
+                           cursor.getPageCount());
+                page = null;
+            }
+
+            out.print("N) Next page, P) Previous page, S) Page size, W) Write result to file, Q) Back to menu: ");
+            out.flush();
+
+            switch (sc.hasNextLine() ? sc.nextLine().trim().toLowerCase() : "q")
+            {
+                case "":
+                case "n":
+                    if (cursor.hasNext()) page = cursor.next();
+                    else showData("It is the last page");
+                    break;
+                case "p":
+                    if (cursor.hasPrevious()) page = cursor.previous();
+                    else showData("It is the first page");
+                    break;
+                case "s":
+                    page = changePageSize(cursor, sc);
+                    break;
+                case "w":
+                    writeToFile(cursor, formatter, sc);
+                    break;
+                case "q":
+                    return;
+                default:
+                    showData("Wrong option - choose again!");
+            }
         }
+    }
 
-    private void showData(Map<?, ?> map)
+    private <T> List<T> changePageSize(ResultCursor<T> cursor, Scanner sc)
     {
-        map.forEach((key, value) -> System.out.println(key + " " + value));
+        try
+        {
+            out.print("Insert page size: ");
+            out.flush();
+
+            cursor.setPageSize(Integer.parseInt(sc.nextLine().trim()));
+            pageSize = cursor.getPageSize();
+
+            return cursor.current();
+        } catch (IllegalArgumentException e)
+        {
+            System.err.println("\n" + e.getMessage());
+        }
+
+        return null;
+    }
+
+    private <T> void writeToFile(ResultCursor<T> cursor, Function<? super T, String> formatter, Scanner sc)
+    {
+        out.print("Insert file name: ");
+        out.flush();
+
+        String fileName = sc.nextLine().trim();
+
+        try (PrintWriter file = new PrintWriter(Files.newBufferedWriter(Paths.get(fileName))))
+        {
+            cursor.forEach(element -> file.println(formatter.apply(element)));
+
+            if (file.checkError()) throw new IOException("CANNOT WRITE TO " + fileName);
+
+            showData(cursor.size() + " results written to " + fileName);
+        } catch (IOException | InvalidPathException e)
+        {
+            System.err.println("\n" + e.getMessage());
+        }
     }
 
     private void showMenu()
@@ -212,6 +379,11 @@ public class MenuServiceImpl
         System.out.println("9) Sort car components");
         System.out.println("10) Get component cars map");
         System.out.println("11) Get cars by price between...");
+        System.out.println("12) Get cars with all components...");
+        System.out.println("13) Get cars with any of components...");
+        System.out.println("14) Sort by many criteria (page)");
+        System.out.println("15) Show result cache statistics");
+        System.out.println("16) Show metrics");
         System.out.println("Press X to quit");
         System.out.print("Insert: ");
     }
@@ -0,0 +1,743 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.exceptions.CustomException;
+import com.stachera.justyna.exceptions.ExceptionCode;
+import com.stachera.justyna.models.converters.CarJsonConverter;
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.enums.Criterion;
+import com.stachera.justyna.models.models.Car;
+import com.stachera.justyna.models.models.Cars;
+import com.stachera.justyna.services.CarMetrics.Operation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Developed by Justyna Stachera on 28.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:41.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Cars split by model into partitions. A car belongs to the partition of the
+ * hash of its model, so all cars of a model are kept together. Every partition
+ * is a {@link CarServiceImpl} with its own snapshot file, journal and binary
+ * copy in the {@value #DIRECTORY_SUFFIX} directory next to the snapshot file,
+ * loaded on first access. Added cars are written to the journal of their
+ * partition only and compaction rewrites only the partitions cars were added to.
+ * Queries restricted to models read only the partitions of those models, the
+ * other queries read every partition and merge the results; cars which are
+ * equal for the sort keys are ordered by partition. So lazy loading only
+ * pays off while queries name their models: the first query which does not,
+ * e.g. all cars, a sort, the statistics or the model and component maps,
+ * loads every partition and keeps it loaded.
+ *
+ * All partitions persist on one shared writer thread and only the metrics
+ * of the partitioned service are registered as an MBean; the metrics of the
+ * partitions are summed up into its gauges.
+ *
+ * The directory is created from the snapshot file and its journal the first
+ * time the partitioned service is opened, the snapshot file itself is not
+ * used afterwards. The number of partitions is fixed from then on.
+ */
+class PartitionedCarService extends CarService
+{
+    static final String DIRECTORY_SUFFIX = ".partitions";
+
+    private static final Pattern PARTITION_FILE = Pattern.compile("partition-(\\d+)\\.json");
+
+    private final String filePath;
+    private final Consumer<? super Exception> errorHandler;
+    private final int loadParallelism;
+    private final int resultCacheCapacity;
+    private final AtomicReferenceArray<CarServiceImpl> partitions;
+    private final ExecutorService persisterExecutor = CarPersister.newExecutor();
+    private final CarMetrics metrics;
+
+    private boolean closed;
+
+    /**
+     * @param filePath       project relative file path
+     * @param partitionCount number of partitions the snapshot file is split
+     *                       into if it has not been partitioned yet
+     */
+    PartitionedCarService(final String filePath, final int partitionCount)
+    {
+        this(filePath, partitionCount, e -> System.err.println("PERSISTENCE FAILED: " + e),
+             Runtime.getRuntime().availableProcessors(), CarServiceImpl.RESULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * @param filePath            project relative file path
+     * @param partitionCount      number of partitions the snapshot file is split
+     *                            into if it has not been partitioned yet
+     * @param errorHandler        receives every failed write of the background persisters
+     * @param loadParallelism     number of threads parsing a partition file
+     * @param resultCacheCapacity number of cached query results of every partition, 0 disables the cache
+     */
+    PartitionedCarService(final String filePath, final int partitionCount,
+                          final Consumer<? super Exception> errorHandler, final int loadParallelism,
+                          final int resultCacheCapacity)
+    {
+        this.filePath = filePath;
+        this.errorHandler = errorHandler;
+        this.loadParallelism = loadParallelism;
+        this.resultCacheCapacity = resultCacheCapacity;
+
+        Path directory = Paths.get(directoryName(filePath));
+        int count = Files.isDirectory(directory) ? countPartitions(directory) : 0;
+
+        this.partitions = new AtomicReferenceArray<>(count > 0 ? count : split(partitionCount));
+        this.metrics = new CarMetrics(() -> sum(CarMetrics::getCarCount), () -> sum(CarMetrics::getDatasetVersion),
+                                      () -> sum(CarMetrics::getPersistedCarCount),
+                                      () -> sum(CarMetrics::getPersistQueueSize));
+        this.metrics.registerInBackground(directory.getFileName().toString());
+    }
+
+    /**
+     * It returns the absolute name of the partition directory of the snapshot file.
+     *
+     * @param filePath project relative file path
+     * @return directory name
+     */
+    static String directoryName(final String filePath)
+    {
+        return Cars.prepareFilePath(filePath) + DIRECTORY_SUFFIX;
+    }
+
+    /**
+     * It returns the partition of the model. String hash codes are the same in
+     * every JVM run, so cars stay in their partitions.
+     *
+     * @param model          model name
+     * @param partitionCount number of partitions
+     * @return partition number
+     */
+    static int partitionOf(final String model, final int partitionCount)
+    {
+        return model == null ? 0 : Math.floorMod(model.hashCode(), partitionCount);
+    }
+
+    int getPartitionCount()
+    {
+        return partitions.length();
+    }
+
+    /**
+     * It returns the numbers of the partitions which have been loaded.
+     *
+     * @return partition numbers
+     */
+    List<Integer> getLoadedPartitions()
+    {
+        List<Integer> loaded = new ArrayList<>();
+
+        for (int partition = 0; partition < partitions.length(); partition++)
+        {
+            if (partitions.get(partition) != null) loaded.add(partition);
+        }
+
+        return loaded;
+    }
+
+    Set<Car> getCars()
+    {
+        return timed(Operation.CARS, () -> new LinkedHashSet<>(concat(CarServiceImpl::sortCarComponents)));
+    }
+
+    ResultCursor<Car> getCarsCursor()
+    {
+        return ResultCursor.concat(all().map(CarServiceImpl::getCarsCursor).collect(Collectors.toList()));
+    }
+
+    /**
+     * It adds the car to the partition of its model.
+     *
+     * @param car {@link Car} to add
+     * @return true if the car has been added, false if an equal car is already stored
+     */
+    boolean addNewCar(final Car car)
+    {
+        long start = System.nanoTime();
+
+        try
+        {
+            return partition(partitionOf(car.getModel(), partitions.length())).addNewCar(car);
+        }
+        finally
+        {
+            metrics.record(Operation.ADD, start);
+        }
+    }
+
+    /**
+     * It adds the cars of every partition as one group commit of that partition.
+     *
+     * @param cars {@link Car}s to add
+     * @return number of cars added, duplicates and invalid cars are skipped
+     */
+    int addNewCars(final Collection<Car> cars)
+    {
+        long start = System.nanoTime();
+        Map<Integer, List<Car>> carsByPartition = new TreeMap<>();
+        int added = 0;
+
+        for (Car car : cars)
+        {
+            carsByPartition.computeIfAbsent(partitionOf(car.getModel(), partitions.length()), p -> new ArrayList<>())
+                           .add(car);
+        }
+
+        for (Map.Entry<Integer, List<Car>> entry : carsByPartition.entrySet())
+        {
+            added += partition(entry.getKey()).addNewCars(entry.getValue());
+        }
+
+        metrics.record(Operation.ADD, start);
+
+        return added;
+    }
+
+    /**
+     * It queues a rewrite of the snapshot file of every partition cars have
+     * been added to since it was loaded.
+     */
+    void compact()
+    {
+        for (int partition : getLoadedPartitions())
+        {
+            CarMetrics partitionMetrics = partitions.get(partition).getMetrics();
+
+            if (partitionMetrics.getPersistedCarCount() > 0 || partitionMetrics.getPersistQueueSize() > 0)
+            {
+                partitions.get(partition).compact();
+            }
+        }
+    }
+
+    void flush()
+    {
+        getLoadedPartitions().forEach(partition -> partitions.get(partition).flush());
+    }
+
+    /**
+     * It closes the loaded partitions, no partition is loaded afterwards.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (partitions)
+        {
+            closed = true;
+        }
+
+        getLoadedPartitions().forEach(partition -> partitions.get(partition).close());
+        persisterExecutor.shutdown();
+        metrics.unregister();
+    }
+
+    List<Car> sort(final List<SortKey> keys, final int offset, final int limit)
+    {
+        SortEngine.checkPage(offset, limit);
+
+        int window = window(offset, limit);
+
+        return timed(Operation.SORT, () -> page(merge(all().map(partition -> partition.sort(keys, 0, window)),
+                                                      comparator(keys)), offset, limit));
+    }
+
+    /**
+     * It returns a cursor merging the sorted cursors of the partitions. The
+     * partitions keep only sorted row numbers and the merge advances page by
+     * page, so cars are still created one page at a time.
+     *
+     * @param keys sort keys
+     * @return {@link Car} cursor
+     */
+    ResultCursor<Car> sortCursor(final List<SortKey> keys)
+    {
+        Comparator<Car> comparator = comparator(keys);
+
+        if (comparator == null) throw new IllegalArgumentException("No sort key given");
+
+        return timed(Operation.SORT_CURSOR, () -> ResultCursor.merge(all().map(partition -> partition.sortCursor(keys))
+                                                                          .collect(Collectors.toList()), comparator));
+    }
+
+    /**
+     * A query restricted to models is only run on the partitions of the
+     * models, the whole query is passed down when that is a single partition.
+     *
+     * @param query query
+     * @return {@link Car} collection
+     */
+    List<Car> query(final CarQuery query)
+    {
+        List<Integer> targets = partitionsOf(query);
+
+        if (targets.size() == 1) return timed(Operation.QUERY, () -> partition(targets.get(0)).query(query));
+
+        CarQuery window = query.withPage(0, window(query.getOffset(), query.getLimit()));
+
+        return timed(Operation.QUERY, () -> page(merge(targets.stream().map(this::partition)
+                                                              .map(partition -> partition.query(window)),
+                                                       comparator(query.getSortKeys())),
+                                                 query.getOffset(), query.getLimit()));
+    }
+
+    String explain(final CarQuery query)
+    {
+        List<Integer> targets = partitionsOf(query);
+
+        return timed(Operation.EXPLAIN, () ->
+        {
+            StringBuilder explain = new StringBuilder("PartitionedQuery[partitions ").append(targets)
+                    .append(" of ").append(partitions.length()).append("]");
+
+            for (int partition : targets)
+            {
+                explain.append("\npartition ").append(partition).append(": ")
+                       .append(partition(partition).explain(query).replace("\n", "\n  "));
+            }
+
+            return explain.toString();
+        });
+    }
+
+    List<Car> getCarsIfMileageGt(final Integer mileage)
+    {
+        return timed(Operation.MILEAGE, () -> unmodifiable(concat(partition -> partition.getCarsIfMileageGt(mileage))));
+    }
+
+    ResultCursor<Car> getCarsIfMileageGtCursor(final Integer mileage)
+    {
+        return ResultCursor.concat(all().map(partition -> partition.getCarsIfMileageGtCursor(mileage))
+                                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * The models of the partitions are disjoint, so the maps are only
+     * combined and sorted in descending order.
+     *
+     * @return model - {@link Car} map
+     */
+    Map<String, Car> getModelCarMap()
+    {
+        return timed(Operation.MODEL_MAP, () ->
+        {
+            Map<String, Car> modelCarMap = new TreeMap<>(Comparator.reverseOrder());
+
+            all().forEach(partition -> modelCarMap.putAll(partition.getModelCarMap()));
+
+            return Collections.unmodifiableMap(new LinkedHashMap<>(modelCarMap));
+        });
+    }
+
+    String getStatistics()
+    {
+        return timed(Operation.STATISTICS, () -> aggregates().getStatistics());
+    }
+
+    /**
+     * It reads the most expensive cars of the partitions which maximum price
+     * is the highest one.
+     *
+     * @return {@link Car} collection
+     */
+    List<Car> getTheHighestPriceCars()
+    {
+        return timed(Operation.HIGHEST_PRICE, () ->
+        {
+            List<CarServiceImpl> all = all().collect(Collectors.toList());
+            long maxPrice = Long.MIN_VALUE;
+
+            for (CarServiceImpl partition : all)
+            {
+                CarAggregates aggregates = partition.getAggregates();
+
+                if (aggregates.getCount() > 0) maxPrice = Math.max(maxPrice, aggregates.getPriceMax());
+            }
+
+            if (maxPrice == Long.MIN_VALUE) throw new CustomException(ExceptionCode.CODE_250, "VALUE IS NULL");
+
+            List<Car> cars = new ArrayList<>();
+
+            for (CarServiceImpl partition : all)
+            {
+                CarAggregates aggregates = partition.getAggregates();
+
+                if (aggregates.getCount() > 0 && aggregates.getPriceMax() == maxPrice)
+                {
+                    cars.addAll(partition.getTheHighestPriceCars());
+                }
+            }
+
+            return unmodifiable(cars);
+        });
+    }
+
+    /**
+     * The car collections of a component are concatenated over the partitions
+     * and the map is sorted by collection size.
+     *
+     * @return component - {@link Car} collection map
+     */
+    Map<String, List<Car>> getComponentCarsMap()
+    {
+        return timed(Operation.COMPONENT_MAP, () ->
+        {
+            Map<String, List<Car>> componentCars = new HashMap<>();
+
+            all().forEach(partition -> partition.getComponentCarsMap().forEach(
+                    (component, cars) -> componentCars.computeIfAbsent(component, c -> new ArrayList<>()).addAll(cars)));
+
+            return Collections.unmodifiableMap(componentCars.entrySet().stream()
+                    .sorted(Comparator.comparingInt((Map.Entry<String, List<Car>> entry) -> entry.getValue().size())
+                                      .thenComparing(Map.Entry::getKey))
+                    .collect(Collectors.toMap(Map.Entry::getKey, entry -> unmodifiable(entry.getValue()),
+                                              (v1, v2) -> v1, LinkedHashMap::new)));
+        });
+    }
+
+    List<Car> getCarsWithAllComponents(final Collection<String> components)
+    {
+        return timed(Operation.ALL_COMPONENTS,
+                     () -> unmodifiable(concat(partition -> partition.getCarsWithAllComponents(components))));
+    }
+
+    List<Car> getCarsWithAnyComponents(final Collection<String> components)
+    {
+        return timed(Operation.ANY_COMPONENTS,
+                     () -> unmodifiable(concat(partition -> partition.getCarsWithAnyComponents(components))));
+    }
+
+    List<Car> getCarsPriceBetween(final BigDecimal lowerPrice, final BigDecimal upperPrice)
+    {
+        return timed(Operation.PRICE_BETWEEN, () ->
+        {
+            List<Car> cars = concat(partition -> partition.getCarsPriceBetween(lowerPrice, upperPrice));
+            cars.sort(Comparator.comparing(Car::getModel).reversed());
+
+            return unmodifiable(cars);
+        });
+    }
+
+    Map<Colour, Long> getCarAmountByColour()
+    {
+        return timed(Operation.COLOUR_COUNT, () -> aggregates().getColourCounts());
+    }
+
+    List<Car> sortCarComponents()
+    {
+        return timed(Operation.SORTED_COMPONENTS, () -> unmodifiable(concat(CarServiceImpl::sortCarComponents)));
+    }
+
+    /**
+     * It returns the result cache statistics of every loaded partition.
+     *
+     * @return cache statistics
+     */
+    String getCacheStatistics()
+    {
+        List<Integer> loaded = getLoadedPartitions();
+
+        if (loaded.isEmpty()) return "NO PARTITION LOADED";
+
+        return loaded.stream()
+                .map(partition -> "partition " + partition + ": " + partitions.get(partition).getCacheStatistics())
+                .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * It returns the metrics of the operations over all partitions, the
+     * gauges sum up the loaded partitions.
+     *
+     * @return service metrics
+     */
+    CarMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * It returns the partition, loading it on first access.
+     *
+     * @param partition partition number
+     * @return partition
+     */
+    private CarServiceImpl partition(final int partition)
+    {
+        CarServiceImpl loaded = partitions.get(partition);
+
+        if (loaded != null) return loaded;
+
+        synchronized (partitions)
+        {
+            if (closed) throw new IllegalStateException("SERVICE CLOSED");
+
+            loaded = partitions.get(partition);
+
+            if (loaded == null)
+            {
+                loaded = new CarServiceImpl(filePath + DIRECTORY_SUFFIX + "/" + partitionFileName(partition),
+                                            errorHandler, loadParallelism, resultCacheCapacity, persisterExecutor,
+                                            false);
+                partitions.set(partition, loaded);
+            }
+
+            return loaded;
+        }
+    }
+
+    /**
+     * It returns every partition, loading the ones which have not been loaded yet.
+     */
+    private Stream<CarServiceImpl> all()
+    {
+        List<CarServiceImpl> all = new ArrayList<>(partitions.length());
+
+        for (int partition = 0; partition < partitions.length(); partition++)
+        {
+            all.add(partition(partition));
+        }
+
+        return all.stream();
+    }
+
+    /**
+     * It returns the partitions of the query models or all partitions for a query of any model.
+     */
+    private List<Integer> partitionsOf(final CarQuery query)
+    {
+        if (query.getModels() == null)
+        {
+            List<Integer> all = new ArrayList<>(partitions.length());
+
+            for (int partition = 0; partition < partitions.length(); partition++) all.add(partition);
+
+            return all;
+        }
+
+        return query.getModels().stream()
+                .map(model -> partitionOf(model, partitions.length()))
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private CarAggregates aggregates()
+    {
+        return CarAggregates.merge(all().map(CarServiceImpl::getAggregates).collect(Collectors.toList()));
+    }
+
+    private List<Car> concat(final Function<CarServiceImpl, List<Car>> query)
+    {
+        return merge(all().map(query), null);
+    }
+
+    private long sum(final ToLongFunction<CarMetrics> gauge)
+    {
+        long sum = 0;
+
+        for (int partition : getLoadedPartitions())
+        {
+            sum += gauge.applyAsLong(partitions.get(partition).getMetrics());
+        }
+
+        return sum;
+    }
+
+    private <V> V timed(final Operation operation, final Supplier<V> query)
+    {
+        long start = System.nanoTime();
+
+        try
+        {
+            return query.get();
+        }
+        finally
+        {
+            metrics.record(operation, start);
+        }
+    }
+
+    /**
+     * It splits the snapshot file and its journal into new partition files.
+     * The files are written to a temporary directory which is then moved into
+     * place, so a failed split leaves no partial partitions behind. A
+     * malformed or unreadable snapshot file fails the split before anything
+     * is written, so the partitions never hold a part of the cars only.
+     *
+     * @return number of partitions
+     * @throws UncheckedIOException when the snapshot file cannot be read or the partitions cannot be written
+     */
+    private int split(final int partitionCount)
+    {
+        if (partitionCount < 1) throw new IllegalArgumentException("PARTITION COUNT MUST BE POSITIVE");
+
+        Path directory = Paths.get(directoryName(filePath));
+        Path temporary = Paths.get(directoryName(filePath) + ".tmp");
+        List<List<Car>> cars = new ArrayList<>(partitionCount);
+
+        for (int partition = 0; partition < partitionCount; partition++) cars.add(new ArrayList<>());
+
+        if (Files.isRegularFile(Paths.get(Cars.prepareFilePath(filePath))))
+        {
+            // reading errors are thrown, a partial read is never split
+            Cars.load(filePath, car -> cars.get(partitionOf(car.getModel(), partitionCount)).add(car),
+                      loadParallelism);
+        }
+
+        try
+        {
+            if (Files.isDirectory(temporary))
+            {
+                try (Stream<Path> files = Files.list(temporary))
+                {
+                    for (Path file : files.collect(Collectors.toList())) Files.delete(file);
+                }
+            }
+
+            Files.createDirectories(temporary);
+
+            for (int partition = 0; partition < partitionCount; partition++)
+            {
+                new CarJsonConverter(temporary.resolve(partitionFileName(partition)).toString())
+                        .convert(cars.get(partition).iterator());
+            }
+
+            Files.move(temporary, directory, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        return partitionCount;
+    }
+
+    /**
+     * It counts the partition files, which have to be numbered from 0 without gaps.
+     */
+    private static int countPartitions(final Path directory)
+    {
+        BitSet numbers = new BitSet();
+
+        try (Stream<Path> files = Files.list(directory))
+        {
+            files.forEach(file ->
+            {
+                Matcher matcher = PARTITION_FILE.matcher(file.getFileName().toString());
+
+                if (matcher.matches()) numbers.set(Integer.parseInt(matcher.group(1)));
+            });
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        if (numbers.nextClearBit(0) != numbers.length())
+        {
+            throw new IllegalStateException("MISSING PARTITION " + numbers.nextClearBit(0) + " IN " + directory);
+        }
+
+        return numbers.cardinality();
+    }
+
+    private static String partitionFileName(final int partition)
+    {
+        return "partition-" + partition + ".json";
+    }
+
+    /**
+     * It concatenates the results of the partitions and sorts them, the sort
+     * is stable and each result is sorted already, so this is a merge.
+     *
+     * @param results    results of the partitions in partition order
+     * @param comparator order of the results or null to keep the partition order
+     * @return merged cars
+     */
+    private static List<Car> merge(final Stream<List<Car>> results, final Comparator<Car> comparator)
+    {
+        List<Car> cars = new ArrayList<>();
+
+        results.forEach(cars::addAll);
+
+        if (comparator != null) cars.sort(comparator);
+
+        return cars;
+    }
+
+    private static List<Car> page(final List<Car> cars, final int offset, final int limit)
+    {
+        int from = Math.min(offset, cars.size());
+        int to = (int) Math.min((long) from + limit, cars.size());
+
+        return unmodifiable(new ArrayList<>(cars.subList(from, to)));
+    }
+
+    /**
+     * It returns how many cars of every partition a page may need.
+     */
+    private static int window(final int offset, final int limit)
+    {
+        return (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * It returns the order of the sort keys as in {@link SortEngine} or null without keys.
+     */
+    private static Comparator<Car> comparator(final List<SortKey> keys)
+    {
+        Comparator<Car> comparator = null;
+
+        for (SortKey key : keys)
+        {
+            Comparator<Car> next = comparator(key.getCriterion());
+
+            if (key.isDesc()) next = next.reversed();
+
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+
+        return comparator;
+    }
+
+    private static Comparator<Car> comparator(final Criterion criterion)
+    {
+        switch (criterion)
+        {
+            case MODEL:
+                return Comparator.comparing(Car::getModel);
+            case COLOUR:
+                return Comparator.comparing(Car::getColour);
+            case PRICE:
+                return Comparator.comparingLong(Car::getPriceInMinorUnits);
+            case MILEAGE:
+                return Comparator.comparingInt(Car::getMileage);
+            default:
+                throw new IllegalArgumentException("Unknown criterion " + criterion);
+        }
+    }
+
+    private static List<Car> unmodifiable(final List<Car> cars)
+    {
+        return Collections.unmodifiableList(cars);
+    }
+}
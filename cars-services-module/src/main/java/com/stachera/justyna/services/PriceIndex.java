@@ -0,0 +1,337 @@
+package com.stachera.justyna.services;
+
+import java.util.Arrays;
+
+/**
+ * Developed by Justyna Stachera on 06.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 20:44.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Rows ordered by fixed-point price (ties by row number). New rows are kept
+ * in a pending buffer, so loading many cars costs one sort instead of one
+ * insertion per car. The buffer is sorted into an immutable run before the
+ * next lookup or snapshot, and runs are merged only with runs not longer
+ * than twice their own length, so the index keeps a logarithmic number of
+ * runs and every row is merged a logarithmic number of times. Snapshots
+ * share the runs, so publishing one added row does not copy the index.
+ */
+class PriceIndex
+{
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int[] EMPTY = new int[0];
+
+    private Run[] runs = new Run[0];
+    private int size;
+
+    private long[] pendingPrices = new long[INITIAL_CAPACITY];
+    private int[] pendingRows = new int[INITIAL_CAPACITY];
+    private int pendingSize;
+
+    PriceIndex()
+    {
+    }
+
+    private PriceIndex(final Run[] runs, final int size)
+    {
+        this.runs = runs;
+        this.size = size;
+        this.pendingPrices = new long[0];
+        this.pendingRows = new int[0];
+    }
+
+    void add(final int row, final long price)
+    {
+        if (pendingSize == pendingRows.length)
+        {
+            pendingPrices = Arrays.copyOf(pendingPrices, pendingSize * 2);
+            pendingRows = Arrays.copyOf(pendingRows, pendingSize * 2);
+        }
+
+        pendingPrices[pendingSize] = price;
+        pendingRows[pendingSize] = row;
+        pendingSize++;
+    }
+
+    int size()
+    {
+        seal();
+
+        return size;
+    }
+
+    /**
+     * It returns the highest price of the index.
+     *
+     * @return fixed-point price
+     * @throws IllegalStateException when the index is empty
+     */
+    long maxPrice()
+    {
+        seal();
+
+        if (size == 0) throw new IllegalStateException("EMPTY PRICE INDEX");
+
+        long maxPrice = Long.MIN_VALUE;
+
+        for (Run run : runs)
+        {
+            maxPrice = Math.max(maxPrice, run.prices[run.prices.length - 1]);
+        }
+
+        return maxPrice;
+    }
+
+    /**
+     * It returns the number of rows which price is between the arguments.
+     *
+     * @param lower lowest fixed-point price, inclusive
+     * @param upper highest fixed-point price, inclusive
+     * @return number of rows
+     */
+    int count(final long lower, final long upper)
+    {
+        seal();
+
+        if (lower > upper) return 0;
+
+        int count = 0;
+
+        for (Run run : runs)
+        {
+            count += run.upperBound(upper) - run.lowerBound(lower);
+        }
+
+        return count;
+    }
+
+    /**
+     * It returns the rows which price is between the arguments, merged from
+     * all runs.
+     *
+     * @param lower lowest fixed-point price, inclusive
+     * @param upper highest fixed-point price, inclusive
+     * @return rows ordered by price
+     */
+    int[] rows(final long lower, final long upper)
+    {
+        seal();
+
+        if (lower > upper) return EMPTY;
+
+        int[] from = new int[runs.length];
+        int[] to = new int[runs.length];
+        int count = 0;
+
+        for (int i = 0; i < runs.length; i++)
+        {
+            from[i] = runs[i].lowerBound(lower);
+            to[i] = runs[i].upperBound(upper);
+            count += to[i] - from[i];
+        }
+
+        int[] rows = new int[count];
+
+        for (int k = 0; k < count; k++)
+        {
+            int next = -1;
+
+            for (int i = 0; i < runs.length; i++)
+            {
+                if (from[i] < to[i] && (next < 0 || runs[i].precedes(from[i], runs[next], from[next]))) next = i;
+            }
+
+            rows[k] = runs[next].rows[from[next]++];
+        }
+
+        return rows;
+    }
+
+    /**
+     * It returns all rows.
+     *
+     * @return rows ordered by price
+     */
+    int[] rows()
+    {
+        return rows(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * It seals the pending rows and returns an immutable view of the index.
+     * Runs are never modified, so the view shares them with the index.
+     *
+     * @return index view
+     */
+    PriceIndex snapshot()
+    {
+        seal();
+
+        return new PriceIndex(runs, size);
+    }
+
+    private void seal()
+    {
+        if (pendingSize == 0) return;
+
+        long[] prices = Arrays.copyOf(pendingPrices, pendingSize);
+        int[] rows = Arrays.copyOf(pendingRows, pendingSize);
+
+        sort(prices, rows, pendingSize);
+
+        Run run = new Run(prices, rows);
+        int count = runs.length;
+
+        while (count > 0 && runs[count - 1].prices.length <= run.prices.length * 2)
+        {
+            run = Run.merge(runs[--count], run);
+        }
+
+        runs = Arrays.copyOf(runs, count + 1);
+        runs[count] = run;
+        size += pendingSize;
+        pendingSize = 0;
+    }
+
+    /**
+     * Stable merge sort of parallel price and row arrays by price. Pending rows
+     * arrive in ascending row order, so stability keeps ties ordered by row.
+     */
+    private static void sort(final long[] prices, final int[] rows, final int length)
+    {
+        long[] bufferPrices = new long[length];
+        int[] bufferRows = new int[length];
+
+        for (int width = 1; width < length; width <<= 1)
+        {
+            for (int from = 0; from < length; from += width << 1)
+            {
+                int middle = Math.min(from + width, length);
+                int to = Math.min(from + (width << 1), length);
+                int i = from;
+                int j = middle;
+                int k = from;
+
+                while (i < middle && j < to)
+                {
+                    if (prices[j] < prices[i])
+                    {
+                        bufferPrices[k] = prices[j];
+                        bufferRows[k++] = rows[j++];
+                    }
+                    else
+                    {
+                        bufferPrices[k] = prices[i];
+                        bufferRows[k++] = rows[i++];
+                    }
+                }
+
+                while (i < middle)
+                {
+                    bufferPrices[k] = prices[i];
+                    bufferRows[k++] = rows[i++];
+                }
+
+                while (j < to)
+                {
+                    bufferPrices[k] = prices[j];
+                    bufferRows[k++] = rows[j++];
+                }
+            }
+
+            System.arraycopy(bufferPrices, 0, prices, 0, length);
+            System.arraycopy(bufferRows, 0, rows, 0, length);
+        }
+    }
+
+    /**
+     * Immutable sorted run of parallel price and row arrays.
+     */
+    private static class Run
+    {
+        private final long[] prices;
+        private final int[] rows;
+
+        Run(final long[] prices, final int[] rows)
+        {
+            this.prices = prices;
+            this.rows = rows;
+        }
+
+        boolean precedes(final int position, final Run other, final int otherPosition)
+        {
+            return prices[position] < other.prices[otherPosition] ||
+                   (prices[position] == other.prices[otherPosition] && rows[position] < other.rows[otherPosition]);
+        }
+
+        /**
+         * It returns the position of the first row which price is not lower than the argument.
+         */
+        int lowerBound(final long price)
+        {
+            int low = 0;
+            int high = prices.length;
+
+            while (low < high)
+            {
+                int mid = (low + high) >>> 1;
+
+                if (prices[mid] < price) low = mid + 1;
+                else high = mid;
+            }
+
+            return low;
+        }
+
+        /**
+         * It returns the position of the first row which price is greater than the argument.
+         */
+        int upperBound(final long price)
+        {
+            int low = 0;
+            int high = prices.length;
+
+            while (low < high)
+            {
+                int mid = (low + high) >>> 1;
+
+                if (prices[mid] <= price) low = mid + 1;
+                else high = mid;
+            }
+
+            return low;
+        }
+
+        static Run merge(final Run first, final Run second)
+        {
+            int length = first.prices.length + second.prices.length;
+            long[] prices = new long[length];
+            int[] rows = new int[length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+
+            while (i < first.prices.length && j < second.prices.length)
+            {
+                if (first.precedes(i, second, j))
+                {
+                    prices[k] = first.prices[i];
+                    rows[k++] = first.rows[i++];
+                }
+                else
+                {
+                    prices[k] = second.prices[j];
+                    rows[k++] = second.rows[j++];
+                }
+            }
+
+            System.arraycopy(first.prices, i, prices, k, first.prices.length - i);
+            System.arraycopy(first.rows, i, rows, k, first.rows.length - i);
+            k += first.prices.length - i;
+            System.arraycopy(second.prices, j, prices, k, second.prices.length - j);
+            System.arraycopy(second.rows, j, rows, k, second.rows.length - j);
+
+            return new Run(prices, rows);
+        }
+    }
+}
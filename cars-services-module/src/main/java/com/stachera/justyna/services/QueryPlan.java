@@ -0,0 +1,397 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Developed by Justyna Stachera on 24.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:37.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Execution plan of a {@link CarQuery} against one {@link CarSnapshot}. The
+ * planner estimates the selectivity of every predicate from the indexes and
+ * aggregates and picks the cheapest access path: a full scan, a range of the
+ * {@link PriceIndex} or the intersection of the {@link ComponentIndex}
+ * posting lists. The cost of a path is the number of rows it touches, rows
+ * read out of order through an index weighing {@value #RANDOM_ACCESS_COST}
+ * times a scanned row. The rows of the access path are then checked against
+ * the remaining predicates in one fused pass over the columns.
+ */
+class QueryPlan
+{
+    private static final int RANDOM_ACCESS_COST = 2;
+    private static final int[] EMPTY = new int[0];
+
+    enum AccessPath
+    {
+        EMPTY, FULL_SCAN, PRICE_INDEX, COMPONENT_INDEX
+    }
+
+    private final CarSnapshot snapshot;
+    private final CarQuery query;
+
+    // compiled predicates
+    private final boolean[] modelMask;
+    private final int colourMask;
+    private final long priceLow;
+    private final long priceHigh;
+    private final int[] componentIds;
+
+    // index ranges and estimates
+    private final int priceRows;
+    private final double selectivity;
+    private final Map<AccessPath, Long> costs = new EnumMap<>(AccessPath.class);
+    private final AccessPath accessPath;
+
+    private QueryPlan(final CarSnapshot snapshot, final CarQuery query)
+    {
+        this.snapshot = snapshot;
+        this.query = query;
+        this.modelMask = modelMask(snapshot, query);
+        this.colourMask = colourMask(query);
+        this.priceLow = query.getPriceMin() == null ? Long.MIN_VALUE
+                                                     : CarStore.toFixedPointBound(query.getPriceMin(), RoundingMode.CEILING);
+        this.priceHigh = query.getPriceMax() == null ? Long.MAX_VALUE
+                                                      : CarStore.toFixedPointBound(query.getPriceMax(), RoundingMode.FLOOR);
+        this.componentIds = query.getComponents().stream().mapToInt(snapshot::componentId).toArray();
+
+        int size = snapshot.size();
+
+        this.priceRows = snapshot.priceIndex().count(priceLow, priceHigh);
+        this.selectivity = estimateSelectivity();
+
+        if (isEmpty())
+        {
+            this.accessPath = AccessPath.EMPTY;
+            costs.put(AccessPath.EMPTY, 0L);
+            return;
+        }
+
+        costs.put(AccessPath.FULL_SCAN, scanCost(size));
+
+        if (query.hasPriceBounds())
+        {
+            costs.put(AccessPath.PRICE_INDEX, (long) priceRows * RANDOM_ACCESS_COST);
+        }
+
+        if (componentIds.length > 0)
+        {
+            long postings = 0;
+            long shortest = Long.MAX_VALUE;
+
+            for (int component : componentIds)
+            {
+                postings += snapshot.componentIndex().postingSize(component);
+                shortest = Math.min(shortest, snapshot.componentIndex().postingSize(component));
+            }
+
+            costs.put(AccessPath.COMPONENT_INDEX, postings + shortest * RANDOM_ACCESS_COST);
+        }
+
+        AccessPath cheapest = AccessPath.FULL_SCAN;
+
+        for (Map.Entry<AccessPath, Long> cost : costs.entrySet())
+        {
+            if (cost.getValue() < costs.get(cheapest)) cheapest = cost.getKey();
+        }
+
+        this.accessPath = cheapest;
+    }
+
+    /**
+     * It plans the query against the snapshot.
+     *
+     * @param snapshot snapshot to query
+     * @param query    query
+     * @return plan
+     */
+    static QueryPlan plan(final CarSnapshot snapshot, final CarQuery query)
+    {
+        return new QueryPlan(snapshot, query);
+    }
+
+    AccessPath getAccessPath()
+    {
+        return accessPath;
+    }
+
+    /**
+     * It returns the estimated number of matching rows.
+     *
+     * @return estimated rows
+     */
+    long getEstimatedRows()
+    {
+        return Math.round(snapshot.size() * selectivity);
+    }
+
+    /**
+     * It runs the plan.
+     *
+     * @return the requested page of matching rows
+     */
+    int[] execute()
+    {
+        int[] rows;
+        int count;
+
+        switch (accessPath)
+        {
+            case EMPTY:
+                return EMPTY;
+            case PRICE_INDEX:
+                rows = snapshot.priceIndex().rows(priceLow, priceHigh);
+                Arrays.sort(rows);
+                count = filter(rows, rows.length, false, true);
+                break;
+            case COMPONENT_INDEX:
+                rows = snapshot.componentIndex().all(componentIds);
+                count = filter(rows, rows.length, true, false);
+                break;
+            default:
+                rows = new int[snapshot.size()];
+                count = scan(rows);
+        }
+
+        if (!query.getSortKeys().isEmpty())
+        {
+            return snapshot.sortEngine().sort(rows, count, query.getSortKeys(), query.getOffset(), query.getLimit());
+        }
+
+        int from = Math.min(query.getOffset(), count);
+        int to = (int) Math.min((long) from + query.getLimit(), count);
+
+        return Arrays.copyOfRange(rows, from, to);
+    }
+
+    /**
+     * It returns a description of the chosen access path, the cost of every
+     * considered path, the filtered predicates and the estimated result size.
+     *
+     * @return plan description
+     */
+    String explain()
+    {
+        StringBuilder explain = new StringBuilder("QueryPlan[").append(query).append("]");
+
+        explain.append("\n  access path: ").append(accessPath);
+
+        if (accessPath == AccessPath.PRICE_INDEX)
+        {
+            explain.append(" (").append(priceRows).append(" rows)");
+        }
+
+        explain.append("\n  costs: ").append(costs);
+        explain.append("\n  filter: ").append(accessPath == AccessPath.EMPTY ? "[]" : filteredPredicates());
+        explain.append("\n  estimated rows: ").append(getEstimatedRows()).append(" of ").append(snapshot.size());
+
+        if (!query.getSortKeys().isEmpty()) explain.append("\n  order by: ").append(query.getSortKeys());
+
+        return explain.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return explain();
+    }
+
+    /**
+     * Rows are scanned in insertion order, so without sort keys the scan stops
+     * as soon as the requested page is complete.
+     */
+    private int scan(final int[] rows)
+    {
+        long wanted = query.getSortKeys().isEmpty() ? (long) query.getOffset() + query.getLimit() : Long.MAX_VALUE;
+        int count = 0;
+
+        for (int row = 0; row < rows.length && count < wanted; row++)
+        {
+            if (matches(row, true, true)) rows[count++] = row;
+        }
+
+        return count;
+    }
+
+    private int filter(final int[] rows, final int length, final boolean checkPrice, final boolean checkComponents)
+    {
+        long wanted = query.getSortKeys().isEmpty() ? (long) query.getOffset() + query.getLimit() : Long.MAX_VALUE;
+        int count = 0;
+
+        for (int i = 0; i < length && count < wanted; i++)
+        {
+            if (matches(rows[i], checkPrice, checkComponents)) rows[count++] = rows[i];
+        }
+
+        return count;
+    }
+
+    /**
+     * The fused filter: every predicate is checked against the columns of the
+     * row, the cheapest checks first.
+     */
+    private boolean matches(final int row, final boolean checkPrice, final boolean checkComponents)
+    {
+        if ((colourMask & 1 << snapshot.colour(row)) == 0) return false;
+
+        int mileage = snapshot.mileage(row);
+
+        if (mileage < query.getMileageMin() || mileage > query.getMileageMax()) return false;
+
+        if (checkPrice)
+        {
+            long price = snapshot.price(row);
+
+            if (price < priceLow || price > priceHigh) return false;
+        }
+
+        if (modelMask != null && !modelMask[snapshot.model(row)]) return false;
+
+        if (checkComponents)
+        {
+            for (int component : componentIds)
+            {
+                if (!snapshot.hasComponent(row, component)) return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isEmpty()
+    {
+        if (snapshot.size() == 0 || colourMask == 0 || priceLow > priceHigh) return true;
+        if (query.getMileageMin() > query.getMileageMax()) return true;
+        if (modelMask != null && !contains(modelMask)) return true;
+
+        for (int component : componentIds)
+        {
+            if (component == StringDictionary.ABSENT) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * It multiplies the selectivities of the predicates, assuming they are
+     * independent. Price and colour selectivities are exact, mileage is
+     * interpolated between the smallest and the largest mileage, models are
+     * assumed to be equally frequent and every component posting list is
+     * taken as the fraction of cars having the component.
+     */
+    private double estimateSelectivity()
+    {
+        int size = snapshot.size();
+
+        if (size == 0) return 0;
+
+        double estimate = 1;
+        CarAggregates aggregates = snapshot.aggregates();
+
+        if (query.hasPriceBounds()) estimate *= (double) priceRows / size;
+
+        if (query.getColours() != null)
+        {
+            long cars = 0;
+
+            for (Colour colour : query.getColours()) cars += aggregates.getColourCount(colour);
+
+            estimate *= (double) cars / size;
+        }
+
+        if (query.hasMileageBounds())
+        {
+            double low = Math.max(query.getMileageMin(), aggregates.getMileageMin());
+            double high = Math.min(query.getMileageMax(), aggregates.getMileageMax());
+            double range = aggregates.getMileageMax() - aggregates.getMileageMin();
+
+            estimate *= low > high ? 0 : range == 0 ? 1 : Math.min(1, (high - low + 1) / (range + 1));
+        }
+
+        if (modelMask != null)
+        {
+            int models = 0;
+
+            for (boolean model : modelMask) if (model) models++;
+
+            estimate *= snapshot.modelCount() == 0 ? 0 : (double) models / snapshot.modelCount();
+        }
+
+        for (int component : componentIds)
+        {
+            estimate *= (double) snapshot.componentIndex().postingSize(component) / size;
+        }
+
+        return estimate;
+    }
+
+    /**
+     * It estimates the rows a scan touches: all of them, or the rows expected
+     * to hold the requested page when the scan can stop early.
+     */
+    private long scanCost(final int size)
+    {
+        if (!query.getSortKeys().isEmpty() || selectivity == 0) return size;
+
+        double wanted = (double) query.getOffset() + query.getLimit();
+
+        return (long) Math.min(size, Math.ceil(wanted / selectivity));
+    }
+
+    private List<String> filteredPredicates()
+    {
+        List<String> predicates = new ArrayList<>();
+
+        if (query.getColours() != null) predicates.add("colour");
+        if (query.hasMileageBounds()) predicates.add("mileage");
+        if (query.hasPriceBounds() && accessPath != AccessPath.PRICE_INDEX) predicates.add("price");
+        if (modelMask != null) predicates.add("model");
+        if (componentIds.length > 0 && accessPath != AccessPath.COMPONENT_INDEX) predicates.add("components");
+
+        return predicates;
+    }
+
+    private static boolean[] modelMask(final CarSnapshot snapshot, final CarQuery query)
+    {
+        if (query.getModels() == null) return null;
+
+        boolean[] mask = new boolean[snapshot.modelCount()];
+
+        for (String model : query.getModels())
+        {
+            int id = snapshot.modelId(model);
+
+            if (id != StringDictionary.ABSENT) mask[id] = true;
+        }
+
+        return mask;
+    }
+
+    private static int colourMask(final CarQuery query)
+    {
+        if (query.getColours() == null) return -1;
+
+        int mask = 0;
+
+        for (Colour colour : query.getColours()) mask |= 1 << colour.ordinal();
+
+        return mask;
+    }
+
+    private static boolean contains(final boolean[] mask)
+    {
+        for (boolean value : mask)
+        {
+            if (value) return true;
+        }
+
+        return false;
+    }
+}
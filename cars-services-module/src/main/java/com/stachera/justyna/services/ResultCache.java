@@ -0,0 +1,151 @@
+package com.stachera.justyna.services;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Developed by Justyna Stachera on 25.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 20:18.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Bounded LRU cache of query results keyed by operation and parameters.
+ * Every entry is tagged with the dataset version of the {@link CarSnapshot}
+ * it was computed from and is only served for the same version, so a result
+ * is never returned after a car has been added. Results are computed outside
+ * of the cache lock; two threads missing the same key at once both compute it.
+ * Cached results are shared between callers and have to be immutable.
+ */
+class ResultCache
+{
+    private final int capacity;
+    private final Map<List<Object>, CachedResult> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static class CachedResult
+    {
+        private final long version;
+        private final Object value;
+
+        private CachedResult(final long version, final Object value)
+        {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    /**
+     * @param capacity maximum number of cached results, 0 disables caching
+     */
+    ResultCache(final int capacity)
+    {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<List<Object>, CachedResult> eldest)
+            {
+                if (size() <= capacity) return false;
+
+                evictions.increment();
+
+                return true;
+            }
+        };
+    }
+
+    /**
+     * It returns the cached result of the operation for the dataset version or
+     * computes and caches it.
+     *
+     * @param version    dataset version the result is computed from
+     * @param loader     computes the result on a miss
+     * @param operation  operation name
+     * @param parameters operation parameters, compared with equals
+     * @param <V>        result type
+     * @return result
+     */
+    @SuppressWarnings("unchecked")
+    <V> V get(final long version, final Supplier<V> loader, final String operation, final Object... parameters)
+    {
+        if (capacity == 0)
+        {
+            misses.increment();
+
+            return loader.get();
+        }
+
+        Object[] keyValues = Arrays.copyOf(parameters, parameters.length + 1);
+        keyValues[parameters.length] = operation;
+
+        List<Object> key = Arrays.asList(keyValues);
+
+        synchronized (entries)
+        {
+            CachedResult entry = entries.get(key);
+
+            if (entry != null && entry.version == version)
+            {
+                hits.increment();
+
+                return (V) entry.value;
+            }
+        }
+
+        misses.increment();
+
+        V value = loader.get();
+
+        synchronized (entries)
+        {
+            CachedResult entry = entries.get(key);
+
+            // a result of an older snapshot never replaces a newer one
+            if (entry == null || entry.version <= version) entries.put(key, new CachedResult(version, value));
+        }
+
+        return value;
+    }
+
+    int size()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        long hitCount = getHitCount();
+        long requestCount = hitCount + getMissCount();
+
+        return MessageFormat.format("ResultCache[size={0}, hits={1}, misses={2}, evictions={3}, hitRate={4,number,percent}]",
+                                    size(), hitCount, getMissCount(), getEvictionCount(),
+                                    requestCount == 0 ? 0 : (double) hitCount / requestCount);
+    }
+}
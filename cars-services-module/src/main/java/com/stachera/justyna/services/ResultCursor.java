@@ -0,0 +1,300 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.models.Car;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Developed by Justyna Stachera on 26.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 19:47.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Cursor paging through a query result. Cursors over a {@link CarSnapshot}
+ * keep only row numbers and create the {@link Car} objects of the requested
+ * page, so paging through millions of cars uses memory for one page only.
+ * A cursor is meant to be used by one thread.
+ */
+class ResultCursor<T>
+{
+    static final int DEFAULT_PAGE_SIZE = 20;
+
+    private final int size;
+    private final IntFunction<? extends T> elements;
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int page = -1;
+
+    private ResultCursor(final int size, final IntFunction<? extends T> elements)
+    {
+        this.size = size;
+        this.elements = elements;
+    }
+
+    static <T> ResultCursor<T> of(final List<? extends T> elements)
+    {
+        return new ResultCursor<>(elements.size(), elements::get);
+    }
+
+    /**
+     * It returns a cursor over all cars of the snapshot in insertion order.
+     */
+    static ResultCursor<Car> of(final CarSnapshot snapshot)
+    {
+        return new ResultCursor<>(snapshot.size(), snapshot::materialize);
+    }
+
+    /**
+     * It returns a cursor over the given rows of the snapshot.
+     */
+    static ResultCursor<Car> of(final CarSnapshot snapshot, final int[] rows)
+    {
+        return new ResultCursor<>(rows.length, index -> snapshot.materialize(rows[index]));
+    }
+
+    /**
+     * It returns a cursor over the elements of all given cursors, one cursor
+     * after another. The elements are still created one page at a time.
+     */
+    static <T> ResultCursor<T> concat(final List<ResultCursor<? extends T>> cursors)
+    {
+        // starts[i] is the position of the first element of cursor i
+        int[] starts = new int[cursors.size() + 1];
+
+        for (int i = 0; i < cursors.size(); i++)
+        {
+            starts[i + 1] = Math.addExact(starts[i], cursors.get(i).size);
+        }
+
+        return new ResultCursor<>(starts[cursors.size()], index ->
+        {
+            int cursor = Arrays.binarySearch(starts, index);
+
+            // skips empty cursors starting at the same position
+            if (cursor >= 0) while (starts[cursor + 1] == index) cursor++;
+            else cursor = -cursor - 2;
+
+            return cursors.get(cursor).elements.apply(index - starts[cursor]);
+        });
+    }
+
+    /**
+     * It returns a cursor merging the elements of the given cursors, each of
+     * them ordered by the comparator. Equal elements are taken from the
+     * cursors in the given order. The merge advances only as far as pages are
+     * requested and keeps the cursor and position of every merged element,
+     * so the elements are still created one page at a time.
+     */
+    static <T> ResultCursor<T> merge(final List<ResultCursor<? extends T>> cursors,
+                                     final Comparator<? super T> comparator)
+    {
+        int size = 0;
+
+        for (ResultCursor<? extends T> cursor : cursors) size = Math.addExact(size, cursor.size);
+
+        return new ResultCursor<>(size, new Merge<>(cursors, comparator)::element);
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    int getPageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * It changes the page size keeping the first element of the current page on the new current page.
+     *
+     * @param pageSize elements per page
+     */
+    void setPageSize(final int pageSize)
+    {
+        if (pageSize <= 0) throw new IllegalArgumentException("PAGE SIZE MUST BE POSITIVE");
+
+        if (page >= 0) page = page * this.pageSize / pageSize;
+
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return current page number counted from 0 or -1 before the first page
+     */
+    int getPage()
+    {
+        return page;
+    }
+
+    int getPageCount()
+    {
+        return (size + pageSize - 1) / pageSize;
+    }
+
+    boolean hasNext()
+    {
+        return page + 1 < getPageCount();
+    }
+
+    boolean hasPrevious()
+    {
+        return page > 0;
+    }
+
+    List<T> next()
+    {
+        if (hasNext()) page++;
+
+        return current();
+    }
+
+    List<T> previous()
+    {
+        if (hasPrevious()) page--;
+
+        return current();
+    }
+
+    /**
+     * @return elements of the current page
+     */
+    List<T> current()
+    {
+        if (page < 0) return Collections.emptyList();
+
+        int from = page * pageSize;
+        int to = Math.min(size, from + pageSize);
+        List<T> elements = new ArrayList<>(to - from);
+
+        for (int index = from; index < to; index++)
+        {
+            elements.add(this.elements.apply(index));
+        }
+
+        return elements;
+    }
+
+    /**
+     * @return position of the first element of the current page
+     */
+    int getPageStart()
+    {
+        return Math.max(0, page) * pageSize;
+    }
+
+    /**
+     * It passes every element to the consumer, one at a time and independently
+     * of the current page.
+     *
+     * @param consumer element consumer
+     */
+    void forEach(final Consumer<? super T> consumer)
+    {
+        for (int index = 0; index < size; index++)
+        {
+            consumer.accept(elements.apply(index));
+        }
+    }
+
+    /**
+     * It returns an iterator over the elements from the given position on.
+     * Elements are created one at a time and independently of the current page.
+     *
+     * @param from position of the first element
+     * @return element iterator
+     */
+    Iterator<T> iterator(final int from)
+    {
+        return new Iterator<T>()
+        {
+            private int index = Math.max(0, from);
+
+            @Override
+            public boolean hasNext()
+            {
+                return index < size;
+            }
+
+            @Override
+            public T next()
+            {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                return elements.apply(index++);
+            }
+        };
+    }
+
+    /**
+     * Lazy k-way merge of ordered cursors. Only the current head element of
+     * every cursor is held; merged elements are remembered as cursor and
+     * position and created again when their page is shown.
+     */
+    private static class Merge<T>
+    {
+        private final List<ResultCursor<? extends T>> cursors;
+        private final Comparator<? super T> comparator;
+        private final int[] positions;
+        private final List<T> heads;
+
+        private int[] mergedCursors = new int[DEFAULT_PAGE_SIZE];
+        private int[] mergedPositions = new int[DEFAULT_PAGE_SIZE];
+        private int merged;
+
+        Merge(final List<ResultCursor<? extends T>> cursors, final Comparator<? super T> comparator)
+        {
+            this.cursors = cursors;
+            this.comparator = comparator;
+            this.positions = new int[cursors.size()];
+            this.heads = new ArrayList<>(cursors.size());
+
+            for (ResultCursor<? extends T> cursor : cursors)
+            {
+                heads.add(cursor.size > 0 ? cursor.elements.apply(0) : null);
+            }
+        }
+
+        T element(final int index)
+        {
+            while (merged <= index) advance();
+
+            return cursors.get(mergedCursors[index]).elements.apply(mergedPositions[index]);
+        }
+
+        private void advance()
+        {
+            int next = -1;
+
+            for (int cursor = 0; cursor < cursors.size(); cursor++)
+            {
+                if (positions[cursor] < cursors.get(cursor).size &&
+                    (next < 0 || comparator.compare(heads.get(cursor), heads.get(next)) < 0))
+                {
+                    next = cursor;
+                }
+            }
+
+            if (merged == mergedCursors.length)
+            {
+                mergedCursors = Arrays.copyOf(mergedCursors, merged * 2);
+                mergedPositions = Arrays.copyOf(mergedPositions, merged * 2);
+            }
+
+            ResultCursor<? extends T> cursor = cursors.get(next);
+            int position = positions[next]++;
+
+            mergedCursors[merged] = next;
+            mergedPositions[merged++] = position;
+            heads.set(next, position + 1 < cursor.size ? cursor.elements.apply(position + 1) : null);
+        }
+    }
+}
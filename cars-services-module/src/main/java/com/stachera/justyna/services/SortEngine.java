@@ -0,0 +1,410 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Criterion;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Developed by Justyna Stachera on 12.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 22:31.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Sorts rows of a {@link CarSnapshot} by an ordered list of {@link SortKey}s.
+ * Ties are always broken by ascending row number, so every order is stable
+ * and deterministic. A row permutation is cached per single key for the
+ * lifetime of the snapshot. Requests for a small page are answered with a
+ * bounded heap instead of a full sort. The engine can be used by many threads
+ * at once; a permutation computed twice by racing threads is simply equal.
+ */
+class SortEngine
+{
+    private static final int[] EMPTY = new int[0];
+
+    private final CarSnapshot snapshot;
+    private final Map<SortKey, int[]> permutations = new ConcurrentHashMap<>();
+
+    private volatile int[] modelRanks;
+
+    @FunctionalInterface
+    interface RowComparator
+    {
+        int compare(int row1, int row2);
+    }
+
+    SortEngine(final CarSnapshot snapshot)
+    {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * It returns a page of rows ordered by the given keys.
+     *
+     * @param keys   sort keys, the first one is the most significant
+     * @param offset number of leading rows to skip
+     * @param limit  maximum number of rows to return
+     * @return ordered rows
+     * @throws IllegalArgumentException when no key is given or the offset or limit is negative
+     */
+    int[] sort(final List<SortKey> keys, final int offset, final int limit)
+    {
+        if (keys.isEmpty()) throw new IllegalArgumentException("No sort key given");
+
+        checkPage(offset, limit);
+
+        int size = snapshot.size();
+        int from = Math.min(offset, size);
+        int to = (int) Math.min((long) from + limit, size);
+
+        if (from >= to) return EMPTY;
+
+        SortKey first = keys.get(0);
+
+        int[] cached = keys.size() == 1 ? permutations.get(first) : null;
+
+        if (cached != null)
+        {
+            return Arrays.copyOfRange(cached, from, to);
+        }
+
+        if (to <= size / 2)
+        {
+            return Arrays.copyOfRange(topK(comparator(keys), to), from, to);
+        }
+
+        if (keys.size() == 1)
+        {
+            return Arrays.copyOfRange(permutation(first), from, to);
+        }
+
+        int[] rows = permutation(first).clone();
+        RowComparator firstComparator = comparator(first.getCriterion());
+        RowComparator rest = comparator(keys.subList(1, keys.size()));
+
+        // rows are already ordered by the first key, only runs of equal first keys need sorting
+        for (int start = 0; start < to; )
+        {
+            int end = start + 1;
+
+            while (end < rows.length && firstComparator.compare(rows[start], rows[end]) == 0) end++;
+
+            if (end - start > 1) sort(rows, start, end, rest);
+
+            start = end;
+        }
+
+        return Arrays.copyOfRange(rows, from, to);
+    }
+
+    /**
+     * It returns a page of the given rows ordered by the keys, e.g. the rows
+     * matching a query.
+     *
+     * @param rows   rows to order
+     * @param count  number of rows to use from the array
+     * @param keys   sort keys, the first one is the most significant
+     * @param offset number of leading rows to skip
+     * @param limit  maximum number of rows to return
+     * @return ordered rows
+     * @throws IllegalArgumentException when no key is given or the offset or limit is negative
+     */
+    int[] sort(final int[] rows, final int count, final List<SortKey> keys, final int offset, final int limit)
+    {
+        if (keys.isEmpty()) throw new IllegalArgumentException("No sort key given");
+
+        checkPage(offset, limit);
+
+        int from = Math.min(offset, count);
+        int to = (int) Math.min((long) from + limit, count);
+
+        if (from >= to) return EMPTY;
+
+        RowComparator comparator = comparator(keys);
+
+        if (to <= count / 2)
+        {
+            return Arrays.copyOfRange(topK(rows, count, comparator, to), from, to);
+        }
+
+        int[] sorted = Arrays.copyOf(rows, count);
+        sort(sorted, 0, count, comparator);
+
+        return Arrays.copyOfRange(sorted, from, to);
+    }
+
+    /**
+     * It checks the offset and limit of a page.
+     *
+     * @param offset number of leading rows to skip
+     * @param limit  maximum number of rows to return
+     * @throws IllegalArgumentException when the offset or limit is negative
+     */
+    static void checkPage(final int offset, final int limit)
+    {
+        if (offset < 0 || limit < 0) throw new IllegalArgumentException("NEGATIVE OFFSET OR LIMIT");
+    }
+
+    /**
+     * It returns all rows ordered by a single key. The permutation is cached for the snapshot.
+     */
+    private int[] permutation(final SortKey key)
+    {
+        int[] rows = permutations.get(key);
+
+        if (rows == null)
+        {
+            rows = key.isDesc() ? descending(permutation(SortKey.asc(key.getCriterion())), key.getCriterion())
+                                : computePermutation(key.getCriterion());
+            permutations.put(key, rows);
+        }
+
+        return rows;
+    }
+
+    /**
+     * It walks the runs of equal keys of the ascending permutation backwards,
+     * keeping every run in ascending row order.
+     */
+    private int[] descending(final int[] ascending, final Criterion criterion)
+    {
+        RowComparator comparator = comparator(criterion);
+        int[] rows = new int[ascending.length];
+        int position = 0;
+
+        for (int end = ascending.length; end > 0; )
+        {
+            int start = end - 1;
+
+            while (start > 0 && comparator.compare(ascending[start - 1], ascending[end - 1]) == 0) start--;
+
+            System.arraycopy(ascending, start, rows, position, end - start);
+            position += end - start;
+            end = start;
+        }
+
+        return rows;
+    }
+
+    private int[] computePermutation(final Criterion criterion)
+    {
+        int size = snapshot.size();
+
+        if (criterion == Criterion.PRICE)
+        {
+            return snapshot.priceIndex().rows();
+        }
+
+        // pack the key into the high and the row into the low half, so a primitive sort orders by key then row
+        long[] packed = new long[size];
+
+        for (int row = 0; row < size; row++)
+        {
+            packed[row] = ((long) (intKey(criterion, row) ^ Integer.MIN_VALUE) << 32) | row;
+        }
+
+        Arrays.sort(packed);
+
+        int[] rows = new int[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            rows[i] = (int) packed[i];
+        }
+
+        return rows;
+    }
+
+    private int intKey(final Criterion criterion, final int row)
+    {
+        switch (criterion)
+        {
+            case MODEL:
+                return modelRanks()[snapshot.model(row)];
+            case COLOUR:
+                return snapshot.colour(row);
+            case MILEAGE:
+                return snapshot.mileage(row);
+            default:
+                throw new IllegalArgumentException("No int key for " + criterion);
+        }
+    }
+
+    private RowComparator comparator(final Criterion criterion)
+    {
+        switch (criterion)
+        {
+            case MODEL:
+                int[] ranks = modelRanks();
+
+                return (row1, row2) -> Integer.compare(ranks[snapshot.model(row1)], ranks[snapshot.model(row2)]);
+            case COLOUR:
+                return (row1, row2) -> Integer.compare(snapshot.colour(row1), snapshot.colour(row2));
+            case PRICE:
+                return (row1, row2) -> Long.compare(snapshot.price(row1), snapshot.price(row2));
+            case MILEAGE:
+                return (row1, row2) -> Integer.compare(snapshot.mileage(row1), snapshot.mileage(row2));
+            default:
+                throw new IllegalArgumentException("Unknown criterion " + criterion);
+        }
+    }
+
+    private RowComparator comparator(final List<SortKey> keys)
+    {
+        RowComparator[] comparators = keys.stream()
+                .map(key -> key.isDesc() ? reversed(comparator(key.getCriterion())) : comparator(key.getCriterion()))
+                .toArray(RowComparator[]::new);
+
+        return (row1, row2) ->
+        {
+            for (RowComparator comparator : comparators)
+            {
+                int result = comparator.compare(row1, row2);
+
+                if (result != 0) return result;
+            }
+
+            return Integer.compare(row1, row2);
+        };
+    }
+
+    private static RowComparator reversed(final RowComparator comparator)
+    {
+        return (row1, row2) -> comparator.compare(row2, row1);
+    }
+
+    private int[] topK(final RowComparator comparator, final int k)
+    {
+        return topK(null, snapshot.size(), comparator, k);
+    }
+
+    /**
+     * It returns the k first rows according to the comparator using a bounded max-heap.
+     *
+     * @param rows  candidate rows or null for all rows of the snapshot
+     * @param count number of candidate rows
+     */
+    private int[] topK(final int[] rows, final int count, final RowComparator comparator, final int k)
+    {
+        int[] heap = new int[k];
+        int heapSize = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            int row = rows == null ? i : rows[i];
+
+            if (heapSize < k)
+            {
+                heap[heapSize] = row;
+                siftUp(heap, heapSize++, comparator);
+            }
+            else if (comparator.compare(row, heap[0]) < 0)
+            {
+                heap[0] = row;
+                siftDown(heap, heapSize, comparator);
+            }
+        }
+
+        sort(heap, 0, heapSize, comparator);
+
+        return heap;
+    }
+
+    private static void siftUp(final int[] heap, int position, final RowComparator comparator)
+    {
+        while (position > 0)
+        {
+            int parent = (position - 1) >>> 1;
+
+            if (comparator.compare(heap[position], heap[parent]) <= 0) return;
+
+            swap(heap, position, parent);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(final int[] heap, final int heapSize, final RowComparator comparator)
+    {
+        int position = 0;
+
+        while (true)
+        {
+            int largest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+
+            if (left < heapSize && comparator.compare(heap[left], heap[largest]) > 0) largest = left;
+            if (right < heapSize && comparator.compare(heap[right], heap[largest]) > 0) largest = right;
+            if (largest == position) return;
+
+            swap(heap, position, largest);
+            position = largest;
+        }
+    }
+
+    private static void swap(final int[] rows, final int i, final int j)
+    {
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+
+    /**
+     * Stable merge sort of a range of rows.
+     */
+    private static void sort(final int[] rows, final int from, final int to, final RowComparator comparator)
+    {
+        int[] buffer = new int[to - from];
+
+        for (int width = 1; width < to - from; width <<= 1)
+        {
+            for (int start = from; start < to; start += width << 1)
+            {
+                int middle = Math.min(start + width, to);
+                int end = Math.min(start + (width << 1), to);
+                int i = start;
+                int j = middle;
+                int k = start - from;
+
+                while (i < middle && j < end)
+                {
+                    buffer[k++] = comparator.compare(rows[j], rows[i]) < 0 ? rows[j++] : rows[i++];
+                }
+
+                while (i < middle) buffer[k++] = rows[i++];
+                while (j < end) buffer[k++] = rows[j++];
+            }
+
+            System.arraycopy(buffer, 0, rows, from, to - from);
+        }
+    }
+
+    /**
+     * It returns the position of every model id in the alphabetical order of model names.
+     */
+    private int[] modelRanks()
+    {
+        int[] ranks = modelRanks;
+
+        if (ranks == null)
+        {
+            Integer[] models = IntStream.range(0, snapshot.modelCount()).boxed().toArray(Integer[]::new);
+            Arrays.sort(models, Comparator.comparing(snapshot::modelName));
+
+            ranks = new int[models.length];
+
+            for (int rank = 0; rank < models.length; rank++)
+            {
+                ranks[models[rank]] = rank;
+            }
+
+            modelRanks = ranks;
+        }
+
+        return ranks;
+    }
+}
@@ -0,0 +1,84 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Criterion;
+
+import java.util.Objects;
+
+/**
+ * Developed by Justyna Stachera on 12.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 20:02.
+ * Copyright (c) 2019. All rights reserved.
+ */
+class SortKey
+{
+    private final Criterion criterion;
+    private final boolean desc;
+
+    SortKey(final Criterion criterion, final boolean desc)
+    {
+        this.criterion = Objects.requireNonNull(criterion);
+        this.desc = desc;
+    }
+
+    static SortKey asc(final Criterion criterion)
+    {
+        return new SortKey(criterion, false);
+    }
+
+    static SortKey desc(final Criterion criterion)
+    {
+        return new SortKey(criterion, true);
+    }
+
+    /**
+     * It parses a sort key written as criterion name optionally followed by ASC or DESC,
+     * e.g. "PRICE DESC".
+     *
+     * @param text sort key text
+     * @return sort key
+     */
+    static SortKey valueOf(final String text)
+    {
+        String[] parts = text.trim().toUpperCase().split("\\s+");
+
+        if (parts.length > 2 || (parts.length == 2 && !parts[1].matches("ASC|DESC")))
+        {
+            throw new IllegalArgumentException("Invalid sort key: " + text);
+        }
+
+        return new SortKey(Criterion.valueOf(parts[0]), parts.length == 2 && parts[1].equals("DESC"));
+    }
+
+    Criterion getCriterion()
+    {
+        return criterion;
+    }
+
+    boolean isDesc()
+    {
+        return desc;
+    }
+
+    @Override
+    public String toString()
+    {
+        return criterion + (desc ? " DESC" : " ASC");
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SortKey sortKey = (SortKey) o;
+        return desc == sortKey.desc &&
+                criterion == sortKey.criterion;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(criterion, desc);
+    }
+}
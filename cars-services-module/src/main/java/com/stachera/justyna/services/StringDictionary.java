@@ -0,0 +1,94 @@
+package com.stachera.justyna.services;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Developed by Justyna Stachera on 04.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 20:47.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Append-only dictionary of strings. A single writer registers new values,
+ * while {@link #snapshot()} views, bounded by the size at the time they were
+ * taken, can be read from any thread.
+ */
+class StringDictionary
+{
+    static final int ABSENT = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Integer> ids;
+    private String[] values;
+    private int size;
+
+    StringDictionary()
+    {
+        this(new ConcurrentHashMap<>(), new String[INITIAL_CAPACITY], 0);
+    }
+
+    private StringDictionary(final Map<String, Integer> ids, final String[] values, final int size)
+    {
+        this.ids = ids;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * It returns the id of the given value, registering the value when it is seen
+     * for the first time.
+     *
+     * @param value value to encode
+     * @return value id
+     */
+    int encode(final String value)
+    {
+        Integer id = ids.get(value);
+
+        if (id == null)
+        {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+
+            id = size;
+            values[size++] = value;
+            ids.put(value, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * It returns the id of the given value or {@value #ABSENT} when the value is unknown.
+     *
+     * @param value value to look up
+     * @return value id
+     */
+    int find(final String value)
+    {
+        Integer id = ids.get(value);
+
+        return id != null && id < size ? id : ABSENT;
+    }
+
+    String decode(final int id)
+    {
+        return values[id];
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * It returns a read-only view of the values registered so far.
+     *
+     * @return dictionary view
+     */
+    StringDictionary snapshot()
+    {
+        return new StringDictionary(ids, values, size);
+    }
+}
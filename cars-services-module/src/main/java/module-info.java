@@ -7,6 +7,9 @@
      requires cars.model.module;
      requires cars.exception.module;
      requires gson.module;
+     requires jdk.httpserver;
+     requires java.management;
+     requires jdk.jfr;
 
      exports com.stachera.justyna.services;
 }
@@ -0,0 +1,152 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.exceptions.CustomException;
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.models.Car;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Developed by Justyna Stachera on 04.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:20.
+ * Copyright (c) 2019. All rights reserved.
+ */
+public class CarStoreTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Car> cars = TestCars.cars(2000, 3);
+
+    @Test
+    public void materializesCarsInInsertionOrder()
+    {
+        CarStore store = store(cars);
+        CarSnapshot snapshot = store.snapshot();
+
+        assertEquals(cars.size(), snapshot.size());
+        assertEquals(cars, snapshot.materializeAll());
+
+        for (int row = 0; row < cars.size(); row += 97)
+        {
+            assertEquals(cars.get(row), snapshot.materialize(row));
+            assertEquals(cars.get(row).getPriceInMinorUnits(), snapshot.price(row));
+            assertEquals(cars.get(row).getMileage().intValue(), snapshot.mileage(row));
+            assertEquals(cars.get(row).getModel(), snapshot.modelName(snapshot.model(row)));
+        }
+    }
+
+    @Test
+    public void rejectsEqualCar()
+    {
+        CarStore store = store(cars);
+        Car car = cars.get(cars.size() / 2);
+        List<String> components = Arrays.asList(car.getComponents().toArray(new String[0]));
+
+        Collections.reverse(components);
+
+        assertFalse(store.add(new Car(car.getModel(), car.getPrice(), car.getColour(), car.getMileage(), components)));
+        assertFalse(store.add(new Car(car.getModel(), car.getPrice().setScale(4), car.getColour(), car.getMileage(),
+                                      car.getComponents())));
+        assertTrue(store.add(new Car(car.getModel(), car.getPrice(), car.getColour(), car.getMileage() + 1,
+                                     car.getComponents())));
+        assertEquals(cars.size() + 1, store.size());
+    }
+
+    @Test
+    public void snapshotIsNotChangedByLaterCars()
+    {
+        CarStore store = store(cars.subList(0, 1000));
+        CarSnapshot snapshot = store.snapshot();
+
+        cars.subList(1000, cars.size()).forEach(store::add);
+
+        assertEquals(1000, snapshot.size());
+        assertEquals(cars.subList(0, 1000), snapshot.materializeAll());
+        assertEquals(cars, store.snapshot().materializeAll());
+        assertTrue(store.snapshot().version() > snapshot.version());
+    }
+
+    @Test
+    public void rejectsCarWithoutValue()
+    {
+        CarStore store = new CarStore();
+
+        try
+        {
+            store.add(new Car("BMW", new BigDecimal("1.005"), Colour.A1, 1, Arrays.asList("ABS")));
+            fail("price without minor units stored");
+        }
+        catch (CustomException e)
+        {
+            assertEquals(0, store.size());
+        }
+
+        try
+        {
+            store.add(new Car("BMW", new BigDecimal("1"), null, 1, Arrays.asList("ABS")));
+            fail("car without colour stored");
+        }
+        catch (CustomException e)
+        {
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    public void roundsPriceBoundsTowardsTheRange()
+    {
+        assertEquals(101, CarStore.toFixedPointBound(new BigDecimal("1.001"), RoundingMode.CEILING));
+        assertEquals(100, CarStore.toFixedPointBound(new BigDecimal("1.009"), RoundingMode.FLOOR));
+        assertEquals(100, CarStore.toFixedPointBound(new BigDecimal("1"), RoundingMode.CEILING));
+        assertEquals(Long.MAX_VALUE, CarStore.toFixedPointBound(new BigDecimal("1e30"), RoundingMode.FLOOR));
+        assertEquals(Long.MIN_VALUE, CarStore.toFixedPointBound(new BigDecimal("-1e30"), RoundingMode.CEILING));
+    }
+
+    @Test
+    public void loadsColumnsOfBinarySnapshot() throws IOException
+    {
+        Path jsonPath = folder.newFile("cars.json").toPath();
+        CarStore store = store(cars);
+
+        CarSnapshotFile.write(store.snapshot(), jsonPath);
+
+        CarStore loaded = new CarStore();
+
+        assertTrue(CarSnapshotFile.read(jsonPath, loaded));
+        assertEquals(cars, loaded.snapshot().materializeAll());
+        assertFalse(loaded.add(cars.get(7)));
+
+        Car car = new Car("LANCIA", 100L, Colour.B1, 1, Arrays.asList("ABS"));
+
+        assertTrue(loaded.add(car));
+        assertEquals(car, loaded.snapshot().materialize(cars.size()));
+    }
+
+    private static CarStore store(final List<Car> cars)
+    {
+        CarStore store = new CarStore();
+
+        for (Car car : cars)
+        {
+            assertTrue(store.add(car));
+        }
+
+        return store;
+    }
+}
@@ -0,0 +1,122 @@
+package com.stachera.justyna.services;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Developed by Justyna Stachera on 08.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 20:05.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * The index is compared with a scan of the component sets of every row.
+ * There are more components than fit one segment, and snapshots are taken
+ * between the rows, so segments are shared and copied many times.
+ */
+public class ComponentIndexTest
+{
+    private static final int ROW_COUNT = 3000;
+    private static final int COMPONENT_COUNT = 150;
+
+    @Test
+    public void findsRowsWithAllAndAnyComponents()
+    {
+        Random random = new Random(5);
+        ComponentIndex index = new ComponentIndex();
+        List<boolean[]> rows = new ArrayList<>();
+        List<ComponentIndex> snapshots = new ArrayList<>();
+        List<Integer> snapshotSizes = new ArrayList<>();
+
+        for (int row = 0; row < ROW_COUNT; row++)
+        {
+            boolean[] components = components(random);
+
+            rows.add(components);
+
+            for (int component = 0; component < COMPONENT_COUNT; component++)
+            {
+                if (components[component]) index.add(component, row);
+            }
+
+            if (random.nextInt(100) == 0)
+            {
+                snapshots.add(index.snapshot());
+                snapshotSizes.add(row + 1);
+            }
+        }
+
+        assertLookups(index.snapshot(), rows, random);
+
+        for (int i = 0; i < snapshots.size(); i++)
+        {
+            assertLookups(snapshots.get(i), rows.subList(0, snapshotSizes.get(i)), random);
+        }
+    }
+
+    @Test
+    public void ignoresUnknownComponents()
+    {
+        ComponentIndex index = new ComponentIndex();
+
+        index.add(0, 0);
+        index.add(0, 0);
+        index.add(1, 2);
+
+        assertArrayEquals(new int[]{0}, index.postings(0));
+        assertArrayEquals(new int[0], index.all(new int[]{0, -1}));
+        assertArrayEquals(new int[0], index.all(new int[]{0, 500}));
+        assertArrayEquals(new int[0], index.all(new int[0]));
+        assertArrayEquals(new int[]{0, 2}, index.any(new int[]{-1, 1, 500, 0}));
+        assertEquals(0, index.postingSize(500));
+    }
+
+    private static void assertLookups(final ComponentIndex index, final List<boolean[]> rows, final Random random)
+    {
+        for (int component = 0; component < COMPONENT_COUNT; component++)
+        {
+            int[] expected = matching(rows, new int[]{component}, true);
+
+            assertEquals(expected.length, index.postingSize(component));
+            assertArrayEquals(expected, index.postings(component));
+        }
+
+        for (int i = 0; i < 200; i++)
+        {
+            int[] components = random.ints(1 + random.nextInt(4), 0, COMPONENT_COUNT).toArray();
+
+            assertArrayEquals(matching(rows, components, true), index.all(components));
+            assertArrayEquals(matching(rows, components, false), index.any(components));
+        }
+    }
+
+    /**
+     * Low component ids are common and high ones rare, so intersections are
+     * both empty and not.
+     */
+    private static boolean[] components(final Random random)
+    {
+        boolean[] components = new boolean[COMPONENT_COUNT];
+
+        for (int component = 0; component < COMPONENT_COUNT; component++)
+        {
+            components[component] = random.nextInt(2 + component / 4) == 0;
+        }
+
+        return components;
+    }
+
+    private static int[] matching(final List<boolean[]> rows, final int[] components, final boolean all)
+    {
+        return IntStream.range(0, rows.size())
+                .filter(row -> all ? IntStream.of(components).allMatch(component -> rows.get(row)[component])
+                                   : IntStream.of(components).anyMatch(component -> rows.get(row)[component]))
+                .toArray();
+    }
+}
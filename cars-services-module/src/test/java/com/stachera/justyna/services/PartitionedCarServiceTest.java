@@ -0,0 +1,205 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.enums.Criterion;
+import com.stachera.justyna.models.models.Car;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Developed by Justyna Stachera on 28.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:58.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Partitioned results are compared with the results of one unpartitioned
+ * service holding the same cars. Cars equal for the sort keys are ordered by
+ * partition in one and by insertion in the other, so ordered results are
+ * compared by their sort keys.
+ */
+public class PartitionedCarServiceTest
+{
+    private static final int CAR_COUNT = 3000;
+    private static final int PARTITION_COUNT = 4;
+    private static final Consumer<Exception> FAIL_ON_ERROR = e -> fail(e.toString());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final List<Car> cars = TestCars.cars(CAR_COUNT, 25);
+
+    private CarServiceImpl unpartitioned;
+    private PartitionedCarService partitioned;
+    private String partitionedPath;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        unpartitioned = new CarServiceImpl(TestCars.emptyCarsFile(folder.newFolder()), FAIL_ON_ERROR, 1, 0);
+        unpartitioned.addNewCars(cars);
+
+        partitionedPath = TestCars.emptyCarsFile(folder.newFolder());
+        partitioned = new PartitionedCarService(partitionedPath, PARTITION_COUNT, FAIL_ON_ERROR, 1, 0);
+        partitioned.addNewCars(cars);
+    }
+
+    @After
+    public void tearDown()
+    {
+        unpartitioned.close();
+        partitioned.close();
+    }
+
+    @Test
+    public void holdsTheSameCars()
+    {
+        assertEquals(unpartitioned.getCars(), partitioned.getCars());
+        assertEquals(unpartitioned.getStatistics(), partitioned.getStatistics());
+        assertEquals(unpartitioned.getCarAmountByColour(), partitioned.getCarAmountByColour());
+        assertEquals(new HashSet<>(unpartitioned.getCarsPriceBetween(new BigDecimal("50"), new BigDecimal("80.50"))),
+                     new HashSet<>(partitioned.getCarsPriceBetween(new BigDecimal("50"), new BigDecimal("80.50"))));
+        assertEquals(new HashSet<>(unpartitioned.getCarsWithAllComponents(Arrays.asList("ABS", "ESP"))),
+                     new HashSet<>(partitioned.getCarsWithAllComponents(Arrays.asList("ABS", "ESP"))));
+    }
+
+    @Test
+    public void sortsLikeUnpartitionedService()
+    {
+        List<SortKey> keys = Arrays.asList(SortKey.asc(Criterion.COLOUR), SortKey.desc(Criterion.PRICE),
+                                           SortKey.asc(Criterion.MILEAGE));
+
+        assertEquals(sortKeys(unpartitioned.sort(keys, 0, Integer.MAX_VALUE), keys),
+                     sortKeys(partitioned.sort(keys, 0, Integer.MAX_VALUE), keys));
+        assertEquals(sortKeys(unpartitioned.sort(keys, 1234, 77), keys),
+                     sortKeys(partitioned.sort(keys, 1234, 77), keys));
+        assertEquals(sortKeys(unpartitioned.sort(keys, 0, Integer.MAX_VALUE), keys),
+                     sortKeys(all(partitioned.sortCursor(keys)), keys));
+    }
+
+    @Test
+    public void queriesOnlyThePartitionsOfTheModels()
+    {
+        CarQuery query = CarQuery.builder().model("BMW").colour(Colour.A1, Colour.B2)
+                                 .orderBy(SortKey.desc(Criterion.MILEAGE)).build();
+
+        reopen();
+
+        assertEquals(unpartitioned.query(query), partitioned.query(query));
+        assertEquals(1, partitioned.getLoadedPartitions().size());
+    }
+
+    @Test
+    public void queriesAcrossPartitions()
+    {
+        CarQuery query = CarQuery.builder().priceBetween(new BigDecimal("20"), new BigDecimal("150"))
+                                 .withComponents("BLUETOOTH").build();
+        List<SortKey> keys = Collections.singletonList(SortKey.asc(Criterion.PRICE));
+        CarQuery sorted = CarQuery.builder().mileageGreaterThan(20000).orderBy(keys).offset(10).limit(100).build();
+
+        assertEquals(new HashSet<>(unpartitioned.query(query)), new HashSet<>(partitioned.query(query)));
+        assertEquals(sortKeys(unpartitioned.query(sorted), keys), sortKeys(partitioned.query(sorted), keys));
+    }
+
+    @Test
+    public void keepsAddedCarsAfterReopening()
+    {
+        Car car = new Car("LANCIA", 123456L, Colour.B3, 42, Arrays.asList("ESP"));
+
+        assertTrue(partitioned.addNewCar(car));
+        assertFalse(partitioned.addNewCar(car));
+
+        partitioned.compact();
+        reopen();
+
+        assertEquals(PARTITION_COUNT, partitioned.getPartitionCount());
+        assertTrue(partitioned.getLoadedPartitions().isEmpty());
+        assertEquals(CAR_COUNT + 1, partitioned.getCars().size());
+        assertTrue(partitioned.getCars().contains(car));
+    }
+
+    @Test
+    public void failsSplitOfMalformedFileWithoutPartitions() throws IOException
+    {
+        File directory = folder.newFolder();
+        String filePath = TestCars.emptyCarsFile(directory);
+
+        Files.write(directory.toPath().resolve("cars.json"), "{\"cars\": [{".getBytes(StandardCharsets.UTF_8));
+
+        try
+        {
+            new PartitionedCarService(filePath, PARTITION_COUNT, FAIL_ON_ERROR, 1, 0);
+            fail("malformed file split");
+        }
+        catch (RuntimeException e)
+        {
+            // expected
+        }
+
+        assertFalse(Files.exists(Paths.get(PartitionedCarService.directoryName(filePath))));
+    }
+
+    /**
+     * The partition count given is ignored, as the cars are partitioned already.
+     */
+    private void reopen()
+    {
+        partitioned.close();
+        partitioned = new PartitionedCarService(partitionedPath, PARTITION_COUNT + 1, FAIL_ON_ERROR, 1, 0);
+    }
+
+    private static List<Car> all(final ResultCursor<Car> cursor)
+    {
+        List<Car> cars = new ArrayList<>();
+
+        cursor.forEach(cars::add);
+
+        return cars;
+    }
+
+    /**
+     * It returns the values of the sort keys of every car.
+     */
+    private static List<List<Object>> sortKeys(final List<Car> cars, final List<SortKey> keys)
+    {
+        return cars.stream()
+                .map(car -> keys.stream().map(key -> value(car, key.getCriterion())).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    private static Object value(final Car car, final Criterion criterion)
+    {
+        switch (criterion)
+        {
+            case MODEL:
+                return car.getModel();
+            case COLOUR:
+                return car.getColour();
+            case PRICE:
+                return car.getPrice();
+            default:
+                return car.getMileage();
+        }
+    }
+}
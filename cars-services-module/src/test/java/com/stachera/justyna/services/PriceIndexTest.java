@@ -0,0 +1,123 @@
+package com.stachera.justyna.services;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Developed by Justyna Stachera on 06.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 20:51.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * The index is compared with a linear scan of the prices it has been given.
+ * Rows are sealed into runs at random points, so lookups merge many runs.
+ */
+public class PriceIndexTest
+{
+    private static final int ROW_COUNT = 5000;
+
+    @Test
+    public void findsRowsOfPriceRangesAcrossRuns()
+    {
+        Random random = new Random(4);
+        PriceIndex index = new PriceIndex();
+        long[] prices = new long[ROW_COUNT];
+
+        for (int row = 0; row < ROW_COUNT; row++)
+        {
+            prices[row] = random.nextInt(300);
+            index.add(row, prices[row]);
+
+            // a lookup seals the pending rows into a new run
+            if (random.nextInt(50) == 0) index.count(0, 0);
+
+            if (row % 499 == 0) assertRanges(index, Arrays.copyOf(prices, row + 1), random);
+        }
+
+        assertRanges(index, prices, random);
+        assertArrayEquals(rows(prices, Long.MIN_VALUE, Long.MAX_VALUE), index.rows());
+        assertEquals(ROW_COUNT, index.size());
+    }
+
+    @Test
+    public void snapshotIsNotChangedByLaterRows()
+    {
+        PriceIndex index = new PriceIndex();
+        long[] prices = {500, 100, 300, 100};
+
+        for (int row = 0; row < prices.length; row++) index.add(row, prices[row]);
+
+        PriceIndex snapshot = index.snapshot();
+
+        index.add(4, 200);
+        index.add(5, 900);
+
+        assertArrayEquals(new int[]{1, 3, 2, 0}, snapshot.rows());
+        assertEquals(500, snapshot.maxPrice());
+        assertEquals(4, snapshot.size());
+        assertArrayEquals(new int[]{1, 3, 4, 2, 0, 5}, index.rows());
+        assertEquals(900, index.maxPrice());
+    }
+
+    @Test
+    public void findsNothingInEmptyRange()
+    {
+        PriceIndex index = new PriceIndex();
+
+        index.add(0, 100);
+
+        assertEquals(0, index.count(200, 100));
+        assertEquals(0, index.rows(200, 100).length);
+        assertEquals(0, index.rows(101, 199).length);
+    }
+
+    @Test
+    public void emptyIndexHasNoMaxPrice()
+    {
+        try
+        {
+            new PriceIndex().maxPrice();
+            fail("max price of empty index");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    private static void assertRanges(final PriceIndex index, final long[] prices, final Random random)
+    {
+        assertEquals(Arrays.stream(prices).max().getAsLong(), index.maxPrice());
+
+        for (int i = 0; i < 20; i++)
+        {
+            long lower = random.nextInt(320) - 10;
+            long upper = lower + random.nextInt(60);
+            int[] expected = rows(prices, lower, upper);
+
+            assertEquals(expected.length, index.count(lower, upper));
+            assertArrayEquals(expected, index.rows(lower, upper));
+        }
+    }
+
+    /**
+     * It returns the rows which price is between the bounds ordered by price and row.
+     */
+    private static int[] rows(final long[] prices, final long lower, final long upper)
+    {
+        return IntStream.range(0, prices.length)
+                .filter(row -> prices[row] >= lower && prices[row] <= upper)
+                .boxed()
+                .sorted((row1, row2) -> prices[row1] != prices[row2] ? Long.compare(prices[row1], prices[row2])
+                                                                    : Integer.compare(row1, row2))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+}
@@ -0,0 +1,196 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.enums.Criterion;
+import com.stachera.justyna.models.models.Car;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Developed by Justyna Stachera on 24.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 22:14.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Every plan is checked for its access path and its rows are compared with a
+ * filter of the cars by the predicates of the query.
+ */
+public class QueryPlanTest
+{
+    private static final String RARE_COMPONENT = "HEAD-UP DISPLAY";
+
+    private final List<Car> cars = cars();
+    private final CarSnapshot snapshot = snapshot(cars);
+
+    @Test
+    public void readsNarrowPriceRangeFromPriceIndex()
+    {
+        assertPlan(QueryPlan.AccessPath.PRICE_INDEX,
+                   CarQuery.builder().priceBetween(new BigDecimal("50"), new BigDecimal("50.50")).build());
+        assertPlan(QueryPlan.AccessPath.PRICE_INDEX,
+                   CarQuery.builder().priceBetween(new BigDecimal("100.001"), new BigDecimal("102.499"))
+                           .colour(Colour.A1, Colour.A2, Colour.B1).withComponents("ABS")
+                           .orderBy(SortKey.desc(Criterion.MILEAGE)).limit(5).build());
+    }
+
+    @Test
+    public void readsRareComponentFromComponentIndex()
+    {
+        assertPlan(QueryPlan.AccessPath.COMPONENT_INDEX, CarQuery.builder().withComponents(RARE_COMPONENT).build());
+        assertPlan(QueryPlan.AccessPath.COMPONENT_INDEX,
+                   CarQuery.builder().withComponents("ESP", RARE_COMPONENT).priceMin(new BigDecimal("20"))
+                           .orderBy(SortKey.asc(Criterion.PRICE)).offset(1).build());
+    }
+
+    @Test
+    public void scansWhenIndexesAreNotSelective()
+    {
+        assertPlan(QueryPlan.AccessPath.FULL_SCAN, CarQuery.builder().build());
+        assertPlan(QueryPlan.AccessPath.FULL_SCAN,
+                   CarQuery.builder().priceBetween(new BigDecimal("1"), new BigDecimal("190")).withComponents("ABS")
+                           .model("BMW", "FIAT").mileageBetween(10000, 30000).build());
+        assertPlan(QueryPlan.AccessPath.FULL_SCAN,
+                   CarQuery.builder().colour(Colour.B2).mileageLowerThan(20000)
+                           .orderBy(SortKey.asc(Criterion.MODEL), SortKey.desc(Criterion.PRICE)).offset(30).limit(40)
+                           .build());
+        // without sort keys the scan stops after the page
+        assertPlan(QueryPlan.AccessPath.FULL_SCAN,
+                   CarQuery.builder().priceMax(new BigDecimal("30")).offset(3).limit(10).build());
+    }
+
+    @Test
+    public void findsNothingForUnsatisfiableQuery()
+    {
+        assertPlan(QueryPlan.AccessPath.EMPTY, CarQuery.builder().model("LANCIA").build());
+        assertPlan(QueryPlan.AccessPath.EMPTY, CarQuery.builder().withComponents("ABS", "JETPACK").build());
+        // the bounds are rounded to whole minor units past each other
+        assertPlan(QueryPlan.AccessPath.EMPTY,
+                   CarQuery.builder().priceBetween(new BigDecimal("50.001"), new BigDecimal("50.009")).build());
+        assertPlan(QueryPlan.AccessPath.EMPTY, CarQuery.builder().colour(Colour.A1).colour(Colour.A2).build());
+        assertPlan(QueryPlan.AccessPath.EMPTY, CarQuery.builder().mileageBetween(10, 5).build());
+        assertPlan(QueryPlan.AccessPath.EMPTY, CarQuery.builder().build(), new CarStore().snapshot());
+    }
+
+    @Test
+    public void explainsChosenPath()
+    {
+        CarQuery query = CarQuery.builder().priceBetween(new BigDecimal("50"), new BigDecimal("50.50"))
+                                 .colour(Colour.A1).orderBy(SortKey.asc(Criterion.MILEAGE)).build();
+        CarQuery priceRange = CarQuery.builder().priceBetween(new BigDecimal("50"), new BigDecimal("50.50")).build();
+        String explain = QueryPlan.plan(snapshot, query).explain();
+
+        assertTrue(explain, explain.contains("access path: PRICE_INDEX (" + matching(priceRange, cars).length
+                                             + " rows)"));
+        assertTrue(explain, explain.contains("filter: [colour]"));
+        assertTrue(explain, explain.contains("of " + cars.size()));
+        assertTrue(explain, explain.contains("order by: "));
+    }
+
+    private void assertPlan(final QueryPlan.AccessPath accessPath, final CarQuery query)
+    {
+        assertPlan(accessPath, query, snapshot);
+    }
+
+    private void assertPlan(final QueryPlan.AccessPath accessPath, final CarQuery query, final CarSnapshot snapshot)
+    {
+        QueryPlan plan = QueryPlan.plan(snapshot, query);
+
+        assertEquals(plan.explain(), accessPath, plan.getAccessPath());
+        assertArrayEquals(plan.explain(), expected(query, cars.subList(0, snapshot.size())), plan.execute());
+    }
+
+    /**
+     * It filters the cars in insertion order, sorts them by the keys and
+     * ascending row and cuts out the page.
+     */
+    private static int[] expected(final CarQuery query, final List<Car> cars)
+    {
+        Comparator<Integer> comparator = (row1, row2) -> 0;
+
+        for (SortKey key : query.getSortKeys())
+        {
+            Comparator<Integer> keyComparator = Comparator.comparing(row -> value(cars.get(row), key.getCriterion()));
+
+            comparator = comparator.thenComparing(key.isDesc() ? keyComparator.reversed() : keyComparator);
+        }
+
+        return IntStream.of(matching(query, cars))
+                .boxed()
+                .sorted(comparator.thenComparing(Comparator.naturalOrder()))
+                .skip(query.getOffset())
+                .limit(query.getLimit())
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static int[] matching(final CarQuery query, final List<Car> cars)
+    {
+        return IntStream.range(0, cars.size()).filter(row -> matches(query, cars.get(row))).toArray();
+    }
+
+    private static boolean matches(final CarQuery query, final Car car)
+    {
+        return (query.getModels() == null || query.getModels().contains(car.getModel()))
+                && (query.getColours() == null || query.getColours().contains(car.getColour()))
+                && (query.getPriceMin() == null || car.getPrice().compareTo(query.getPriceMin()) >= 0)
+                && (query.getPriceMax() == null || car.getPrice().compareTo(query.getPriceMax()) <= 0)
+                && car.getMileage() >= query.getMileageMin() && car.getMileage() <= query.getMileageMax()
+                && car.getComponents().containsAll(query.getComponents());
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Comparable value(final Car car, final Criterion criterion)
+    {
+        switch (criterion)
+        {
+            case MODEL:
+                return car.getModel();
+            case COLOUR:
+                return car.getColour().ordinal();
+            case PRICE:
+                return car.getPriceInMinorUnits();
+            default:
+                return car.getMileage();
+        }
+    }
+
+    /**
+     * A few cars get a component no other car has.
+     */
+    private static List<Car> cars()
+    {
+        List<Car> cars = new ArrayList<>(TestCars.cars(4000, 18));
+
+        for (int row = 0; row < cars.size(); row += 700)
+        {
+            Car car = cars.get(row);
+            List<String> components = new ArrayList<>(car.getComponents());
+
+            components.add(RARE_COMPONENT);
+            cars.set(row, new Car(car.getModel(), car.getPrice(), car.getColour(), car.getMileage(), components));
+        }
+
+        cars.add(new Car("BMW", 5000L, Colour.A1, 7, Arrays.asList("ESP", RARE_COMPONENT)));
+
+        return cars;
+    }
+
+    private static CarSnapshot snapshot(final List<Car> cars)
+    {
+        CarStore store = new CarStore();
+
+        cars.forEach(store::add);
+
+        return store.snapshot();
+    }
+}
@@ -0,0 +1,164 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.enums.Criterion;
+import com.stachera.justyna.models.models.Car;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Developed by Justyna Stachera on 25.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 20:42.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * The cache is checked on its own and behind the service, where every result
+ * read after an added car is compared with a filter of all cars added.
+ */
+public class ResultCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final List<Car> cars = new ArrayList<>(TestCars.cars(1500, 19));
+
+    private CarServiceImpl carService;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        carService = new CarServiceImpl(TestCars.emptyCarsFile(folder.newFolder()), e -> fail(e.toString()), 1, 64);
+        carService.addNewCars(cars);
+    }
+
+    @After
+    public void tearDown()
+    {
+        carService.close();
+    }
+
+    @Test
+    public void servesResultOnlyForItsVersion()
+    {
+        ResultCache cache = new ResultCache(10);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<List<Integer>> loader = () -> Collections.singletonList(loads.incrementAndGet());
+
+        List<Integer> first = cache.get(1, loader, "SORT", "PRICE", 10);
+
+        assertSame(first, cache.get(1, loader, "SORT", "PRICE", 10));
+        assertEquals(Collections.singletonList(2), cache.get(1, loader, "SORT", "PRICE", 11));
+        assertEquals(Collections.singletonList(3), cache.get(1, loader, "QUERY", "PRICE", 10));
+        assertEquals(Collections.singletonList(4), cache.get(2, loader, "SORT", "PRICE", 10));
+
+        // a result of an older snapshot does not replace the newer one
+        assertEquals(Collections.singletonList(5), cache.get(1, loader, "SORT", "PRICE", 10));
+        assertEquals(Collections.singletonList(4), cache.get(2, loader, "SORT", "PRICE", 10));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(5, cache.getMissCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedResult()
+    {
+        ResultCache cache = new ResultCache(2);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Integer> loader = loads::incrementAndGet;
+
+        cache.get(1, loader, "A");
+        cache.get(1, loader, "B");
+        cache.get(1, loader, "A");
+        cache.get(1, loader, "C");
+
+        assertEquals(Integer.valueOf(1), cache.get(1, loader, "A"));
+        assertEquals(Integer.valueOf(3), cache.get(1, loader, "C"));
+        assertEquals(Integer.valueOf(4), cache.get(1, loader, "B"));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void cachesNothingWithoutCapacity()
+    {
+        ResultCache cache = new ResultCache(0);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1, loads::incrementAndGet, "A");
+        cache.get(1, loads::incrementAndGet, "A");
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void returnsFreshResultsAfterAddingCar()
+    {
+        BigDecimal lower = new BigDecimal("40");
+        BigDecimal upper = new BigDecimal("60.50");
+        List<String> components = Arrays.asList("ABS", "NAVIGATION");
+        List<SortKey> keys = Arrays.asList(SortKey.desc(Criterion.PRICE), SortKey.asc(Criterion.MODEL));
+        CarQuery query = CarQuery.builder().colour(Colour.A1).mileageGreaterThan(25000).build();
+
+        List<Car> priceBetween = carService.getCarsPriceBetween(lower, upper);
+        List<Car> allComponents = carService.getCarsWithAllComponents(components);
+        List<Car> sorted = carService.sort(keys, 0, 10);
+        List<Car> queried = carService.query(query);
+        String statistics = carService.getStatistics();
+
+        assertSame(priceBetween, carService.getCarsPriceBetween(lower, upper));
+        assertSame(allComponents, carService.getCarsWithAllComponents(components));
+        assertSame(sorted, carService.sort(keys, 0, 10));
+        assertSame(queried, carService.query(query));
+        assertSame(statistics, carService.getStatistics());
+
+        // both cars have the components and match the query, one is in the price range, the other the most expensive
+        Car car = new Car("ALFA ROMEO", 5000L, Colour.A1, 30000, Arrays.asList("ABS", "NAVIGATION"));
+        Car expensive = new Car("ALFA ROMEO", 10000000L, Colour.A1, 30000, Arrays.asList("ABS", "NAVIGATION"));
+
+        assertTrue(carService.addNewCar(car));
+        assertTrue(carService.addNewCar(expensive));
+        cars.add(car);
+        cars.add(expensive);
+
+        assertNotSame(priceBetween, carService.getCarsPriceBetween(lower, upper));
+        assertEquals(new HashSet<>(filter(c -> c.getPrice().compareTo(lower) >= 0
+                                               && c.getPrice().compareTo(upper) <= 0)),
+                     new HashSet<>(carService.getCarsPriceBetween(lower, upper)));
+        assertEquals(filter(c -> c.getComponents().containsAll(components)),
+                     carService.getCarsWithAllComponents(components));
+        assertEquals(expensive, carService.sort(keys, 0, 10).get(0));
+        assertEquals(filter(c -> c.getColour() == Colour.A1 && c.getMileage() > 25000), carService.query(query));
+        assertTrue(carService.getStatistics().contains(MessageFormat.format("max={0}", expensive.getPrice())));
+    }
+
+    private List<Car> filter(final Predicate<Car> predicate)
+    {
+        return cars.stream().filter(predicate).collect(Collectors.toList());
+    }
+}
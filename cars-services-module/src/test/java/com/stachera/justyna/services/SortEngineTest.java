@@ -0,0 +1,197 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Criterion;
+import com.stachera.justyna.models.models.Car;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Developed by Justyna Stachera on 12.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 22:47.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Every page is compared with a comparator sort of the cars, ties broken by
+ * row. Small pages take the bounded heap, large ones the cached permutations.
+ */
+public class SortEngineTest
+{
+    private static final int CAR_COUNT = 4000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final List<Car> cars = TestCars.cars(CAR_COUNT, 7);
+    private final CarSnapshot snapshot = snapshot(cars);
+
+    @Test
+    public void sortsPagesBySingleKey()
+    {
+        for (Criterion criterion : Criterion.values())
+        {
+            for (SortKey key : Arrays.asList(SortKey.asc(criterion), SortKey.desc(criterion)))
+            {
+                List<SortKey> keys = Collections.singletonList(key);
+
+                assertPages(new SortEngine(snapshot), keys);
+
+                SortEngine engine = new SortEngine(snapshot);
+
+                // a full page caches the permutation, so the later pages are cut from it
+                assertArrayEquals(expected(keys, 0, CAR_COUNT), engine.sort(keys, 0, CAR_COUNT));
+                assertPages(engine, keys);
+            }
+        }
+    }
+
+    @Test
+    public void sortsPagesByManyKeys()
+    {
+        List<List<SortKey>> keyLists = Arrays.asList(
+                Arrays.asList(SortKey.asc(Criterion.MODEL), SortKey.desc(Criterion.PRICE)),
+                Arrays.asList(SortKey.desc(Criterion.COLOUR), SortKey.asc(Criterion.MILEAGE),
+                              SortKey.desc(Criterion.MODEL)),
+                Arrays.asList(SortKey.asc(Criterion.PRICE), SortKey.asc(Criterion.COLOUR)),
+                Arrays.asList(SortKey.desc(Criterion.MILEAGE), SortKey.asc(Criterion.PRICE),
+                              SortKey.asc(Criterion.MODEL), SortKey.desc(Criterion.COLOUR)));
+
+        for (List<SortKey> keys : keyLists)
+        {
+            assertPages(snapshot.sortEngine(), keys);
+        }
+    }
+
+    @Test
+    public void sortsPagesOfGivenRows()
+    {
+        Random random = new Random(7);
+        int[] rows = IntStream.range(0, CAR_COUNT).filter(row -> random.nextInt(3) == 0).toArray();
+        int count = rows.length - 10;
+        List<Integer> candidates = IntStream.of(rows).limit(count).boxed().collect(Collectors.toList());
+        List<SortKey> keys = Arrays.asList(SortKey.desc(Criterion.MODEL), SortKey.asc(Criterion.MILEAGE));
+
+        for (int[] page : new int[][]{{0, 5}, {17, 40}, {0, count}, {count / 3, count}, {count - 3, 10}, {count, 1}})
+        {
+            assertArrayEquals(expected(candidates, keys, page[0], page[1]),
+                              snapshot.sortEngine().sort(rows, count, keys, page[0], page[1]));
+        }
+    }
+
+    @Test
+    public void rejectsNegativePageInEveryService() throws IOException
+    {
+        List<SortKey> keys = Collections.singletonList(SortKey.asc(Criterion.PRICE));
+
+        assertRejected(() -> snapshot.sortEngine().sort(keys, -1, 10));
+        assertRejected(() -> snapshot.sortEngine().sort(new int[]{1, 2}, 2, keys, 0, -1));
+
+        try (CarServiceImpl carService = new CarServiceImpl(TestCars.emptyCarsFile(folder.newFolder()),
+                                                            e -> fail(e.toString()), 1, 0))
+        {
+            List<Integer> rows = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+            carService.addNewCars(cars.subList(0, rows.size()));
+
+            assertEquals(materialize(expected(rows, keys, 10, 20)), carService.sort(keys, 10, 20));
+            assertRejected(() -> carService.sort(keys, -1, 10));
+            assertRejected(() -> carService.sort(keys, 0, -1));
+        }
+    }
+
+    private void assertPages(final SortEngine engine, final List<SortKey> keys)
+    {
+        int[][] pages = {{0, 1}, {0, 25}, {13, 50}, {0, CAR_COUNT / 2}, {CAR_COUNT / 2 - 1, 2}, {100, CAR_COUNT},
+                         {0, Integer.MAX_VALUE}, {CAR_COUNT - 5, 100}, {CAR_COUNT, 10}, {5, 0}};
+
+        for (int[] page : pages)
+        {
+            assertArrayEquals(keys + " " + page[0] + "/" + page[1], expected(keys, page[0], page[1]),
+                              engine.sort(keys, page[0], page[1]));
+        }
+    }
+
+    private int[] expected(final List<SortKey> keys, final int offset, final int limit)
+    {
+        return expected(IntStream.range(0, CAR_COUNT).boxed().collect(Collectors.toList()), keys, offset, limit);
+    }
+
+    /**
+     * It sorts the rows with a comparator of the cars.
+     */
+    private int[] expected(final List<Integer> rows, final List<SortKey> keys, final int offset, final int limit)
+    {
+        Comparator<Integer> comparator = (row1, row2) -> 0;
+
+        for (SortKey key : keys)
+        {
+            Comparator<Integer> keyComparator = Comparator.comparing(row -> value(cars.get(row), key.getCriterion()));
+
+            comparator = comparator.thenComparing(key.isDesc() ? keyComparator.reversed() : keyComparator);
+        }
+
+        return rows.stream()
+                .sorted(comparator.thenComparing(Comparator.naturalOrder()))
+                .skip(offset)
+                .limit(limit)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private List<Car> materialize(final int[] rows)
+    {
+        return IntStream.of(rows).mapToObj(cars::get).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Comparable value(final Car car, final Criterion criterion)
+    {
+        switch (criterion)
+        {
+            case MODEL:
+                return car.getModel();
+            case COLOUR:
+                return car.getColour().ordinal();
+            case PRICE:
+                return car.getPriceInMinorUnits();
+            default:
+                return car.getMileage();
+        }
+    }
+
+    private static void assertRejected(final Runnable sort)
+    {
+        try
+        {
+            sort.run();
+            fail("negative offset or limit accepted");
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertEquals("NEGATIVE OFFSET OR LIMIT", e.getMessage());
+        }
+    }
+
+    private static CarSnapshot snapshot(final List<Car> cars)
+    {
+        CarStore store = new CarStore();
+
+        cars.forEach(store::add);
+
+        return store.snapshot();
+    }
+}
@@ -0,0 +1,84 @@
+package com.stachera.justyna.services;
+
+import com.stachera.justyna.models.enums.Colour;
+import com.stachera.justyna.models.models.Car;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Developed by Justyna Stachera on 04.03.2019.
+ * Package name: com.stachera.justyna.services
+ * Last modified 21:12.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Deterministic test cars. Prices, mileages and models repeat often, so sorts
+ * and range queries meet many ties.
+ */
+final class TestCars
+{
+    static final String[] MODELS = {"AUDI", "BMW", "FIAT", "MAZDA", "OPEL", "SKODA", "TOYOTA"};
+    static final String[] COMPONENTS = {"ABS", "AIR CONDITIONING", "ALLOY WHEELS", "BLUETOOTH", "CRUISE CONTROL",
+                                        "ESP", "NAVIGATION"};
+
+    private TestCars()
+    {
+    }
+
+    /**
+     * It returns distinct cars generated from the seed.
+     *
+     * @param count number of cars
+     * @param seed  random seed
+     * @return cars in generation order
+     */
+    static List<Car> cars(final int count, final long seed)
+    {
+        Random random = new Random(seed);
+        Set<Car> cars = new LinkedHashSet<>();
+
+        while (cars.size() < count)
+        {
+            List<String> components = new ArrayList<>();
+
+            for (String component : COMPONENTS)
+            {
+                if (random.nextInt(3) == 0) components.add(component);
+            }
+
+            String model = MODELS[random.nextInt(MODELS.length)];
+            long price = 100L * (1 + random.nextInt(200)) + 50L * random.nextInt(2);
+            Colour colour = Colour.values()[random.nextInt(Colour.values().length)];
+            int mileage = 1 + 1000 * random.nextInt(50);
+
+            cars.add(new Car(model, price, colour, mileage, components));
+        }
+
+        return new ArrayList<>(cars);
+    }
+
+    /**
+     * It writes a snapshot file without cars and returns its project relative
+     * path, as the services expect it.
+     *
+     * @param directory directory below the working directory
+     * @return project relative file path
+     */
+    static String emptyCarsFile(final File directory) throws IOException
+    {
+        Path file = directory.toPath().resolve("cars.json").toAbsolutePath();
+
+        Files.write(file, "{\"cars\": []}".getBytes(StandardCharsets.UTF_8));
+
+        return "/" + Paths.get("").toAbsolutePath().relativize(file).toString().replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,234 @@
+package com.stachera.justyna.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Developed by Justyna Stachera on 23.03.2019.
+ * Package name: com.stachera.justyna.json
+ * Last modified 21:06.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Structural pre-scan of a UTF-8 JSON document. It only follows strings and
+ * brackets, without parsing any value, and splits the arrays stored under a
+ * top level property into byte ranges of whole elements, so every range can
+ * be parsed on its own. Every range boundary is an ASCII structural byte, so
+ * no multi-byte character is ever cut.
+ */
+final class JsonChunkScanner
+{
+    private final ByteBuffer document;
+    private final byte[] arrayName;
+    private final int chunkSize;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    private JsonChunkScanner(final ByteBuffer document, final String arrayName, final int chunkSize)
+    {
+        this.document = document;
+        this.arrayName = arrayName.getBytes(StandardCharsets.UTF_8);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * It returns the elements of the arrays stored under the given top level
+     * property, in document order, as ranges of at least chunkSize bytes
+     * (except the last range of every array). A range holds the elements and
+     * the commas between them, but no enclosing brackets.
+     *
+     * @param document  JSON document
+     * @param arrayName name of the top level array property
+     * @param chunkSize minimum range size in bytes
+     * @return element ranges
+     * @throws IllegalArgumentException when the document structure is malformed
+     */
+    static List<ByteBuffer> split(final ByteBuffer document, final String arrayName, final int chunkSize)
+    {
+        JsonChunkScanner scanner = new JsonChunkScanner(document, arrayName, chunkSize);
+        scanner.scanDocument();
+
+        return scanner.chunks;
+    }
+
+    private void scanDocument()
+    {
+        int position = expect(skipWhitespace(0), '{') + 1;
+
+        position = skipWhitespace(position);
+
+        if (peek(position) == '}') return;
+
+        while (true)
+        {
+            int keyEnd = skipString(expect(position, '"'));
+            boolean matches = isArrayName(position + 1, keyEnd - 1);
+
+            position = skipWhitespace(expect(skipWhitespace(keyEnd), ':') + 1);
+            position = matches && peek(position) == '[' ? splitArray(position) : skipValue(position);
+            position = skipWhitespace(position);
+
+            if (peek(position) == '}') return;
+
+            position = skipWhitespace(expect(position, ',') + 1);
+        }
+    }
+
+    private int splitArray(final int arrayStart)
+    {
+        int position = skipWhitespace(arrayStart + 1);
+
+        if (peek(position) == ']') return position + 1;
+
+        int chunkStart = position;
+
+        while (true)
+        {
+            int elementEnd = skipValue(position);
+
+            position = skipWhitespace(elementEnd);
+
+            if (peek(position) == ']')
+            {
+                addChunk(chunkStart, elementEnd);
+
+                return position + 1;
+            }
+
+            position = skipWhitespace(expect(position, ',') + 1);
+
+            if (elementEnd - chunkStart >= chunkSize)
+            {
+                addChunk(chunkStart, elementEnd);
+                chunkStart = position;
+            }
+        }
+    }
+
+    private void addChunk(final int start, final int end)
+    {
+        ByteBuffer chunk = document.duplicate();
+        chunk.position(start).limit(end);
+
+        chunks.add(chunk.slice());
+    }
+
+    /**
+     * It returns the position following the value starting at the given position.
+     */
+    private int skipValue(final int position)
+    {
+        byte b = peek(position);
+
+        if (b == '"') return skipString(position);
+        if (b != '{' && b != '[') return skipLiteral(position);
+
+        int depth = 0;
+        int i = position;
+
+        while (true)
+        {
+            b = peek(i);
+
+            if (b == '"')
+            {
+                i = skipString(i);
+                continue;
+            }
+
+            if (b == '{' || b == '[') depth++;
+            else if (b == '}' || b == ']') depth--;
+
+            i++;
+
+            if (depth == 0) return i;
+        }
+    }
+
+    private int skipString(final int position)
+    {
+        int i = position + 1;
+
+        while (true)
+        {
+            byte b = peek(i);
+
+            if (b == '"') return i + 1;
+
+            i += b == '\\' ? 2 : 1;
+        }
+    }
+
+    private int skipLiteral(final int position)
+    {
+        int i = position;
+
+        while (i < document.limit())
+        {
+            byte b = document.get(i);
+
+            if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) break;
+
+            i++;
+        }
+
+        if (i == position) throw malformed(position);
+
+        return i;
+    }
+
+    private int skipWhitespace(final int position)
+    {
+        int i = position;
+
+        while (i < document.limit() && isWhitespace(document.get(i)))
+        {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * Keys are compared byte by byte, so escaped keys are not supported.
+     */
+    private boolean isArrayName(final int start, final int end)
+    {
+        boolean matches = end - start == arrayName.length;
+
+        for (int i = start; i < end; i++)
+        {
+            byte b = document.get(i);
+
+            if (b == '\\') throw new IllegalArgumentException("ESCAPED KEY AT BYTE " + i);
+
+            matches = matches && b == arrayName[i - start];
+        }
+
+        return matches;
+    }
+
+    private int expect(final int position, final char expected)
+    {
+        if (peek(position) != expected) throw malformed(position);
+
+        return position;
+    }
+
+    private byte peek(final int position)
+    {
+        if (position >= document.limit()) throw malformed(position);
+
+        return document.get(position);
+    }
+
+    private static boolean isWhitespace(final byte b)
+    {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static IllegalArgumentException malformed(final int position)
+    {
+        return new IllegalArgumentException("MALFORMED JSON AT BYTE " + position);
+    }
+}
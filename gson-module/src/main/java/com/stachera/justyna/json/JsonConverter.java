@@ -2,47 +2,104 @@ package com.stachera.justyna.json;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 /**
  * Developed by Justyna Stachera on 15.01.2019.
  * Package name: com.stachera.justyna.json
  * Last modified 21:08.
  * Copyright (c) 2019. All rights reserved.
+ *
+ * Errors reading a whole object are printed and leave the result empty.
+ * Errors streaming an array are thrown, a {@link JsonParseException} for a
+ * malformed file and an {@link UncheckedIOException} otherwise, so callers
+ * never mistake the elements read before the error for the whole array.
+ * Writing errors are thrown as {@link UncheckedIOException}, so callers
+ * persisting data can react to them. Files are written to a temporary file,
+ * synced and then moved over the target, so a failed write never leaves a
+ * truncated file behind.
  */
 public abstract class JsonConverter<T>
 {
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] ARRAY_END = {']'};
+
     private final String jsonFileName;
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Gson gson;
     private final Type type = ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
     
     public JsonConverter(String jsonFileName)
+    {
+        this(jsonFileName, null);
+    }
+
+    /**
+     * @param jsonFileName JSON file name
+     * @param symbolTable  table the {@link JsonResolvable}s read from the file intern their strings in,
+     *                     null to disable interning
+     */
+    public JsonConverter(String jsonFileName, SymbolTable symbolTable)
     {
         this.jsonFileName = jsonFileName;
+        this.gson = new GsonBuilder()
+                .setPrettyPrinting()
+                .registerTypeAdapterFactory(new ResolvingTypeAdapterFactory(symbolTable))
+                .create();
     }
     
     public void convert(final T obj)
     {
-        try (FileWriter fileWriter = new FileWriter(jsonFileName))
-        {
-            if (obj == null)
-            { throw new NullPointerException("NULL VALIDATION"); }
-            
-            gson.toJson(obj, fileWriter);
-        }
-        catch (NullPointerException | IOException e)
-        {
-            System.err.println(e);
-        }
+        if (obj == null)
+        { throw new NullPointerException("NULL VALIDATION"); }
+
+        write(fileWriter -> gson.toJson(obj, fileWriter));
     }
     
     public T convert() {
-        try (FileReader fileReader = new FileReader(jsonFileName)) {
+        try (BufferedReader fileReader = Files.newBufferedReader(Paths.get(jsonFileName), StandardCharsets.UTF_8)) {
             return gson.fromJson(fileReader, type);
         }
         catch (IOException e)
@@ -52,4 +109,308 @@ public abstract class JsonConverter<T>
         
         return null;
     }
+
+    /**
+     * It reads the array stored under the given top level property token by token
+     * and passes every element to the consumer as soon as it is parsed, so the
+     * whole object graph is never held in memory at once.
+     *
+     * @param arrayName   name of the top level array property
+     * @param elementType type of the array elements
+     * @param consumer    element consumer
+     * @param <E>         element type
+     * @throws JsonParseException   when the array or an element is malformed
+     * @throws UncheckedIOException when the file cannot be read
+     */
+    protected <E> void convert(final String arrayName, final Class<E> elementType, final Consumer<? super E> consumer)
+    {
+        try (JsonReader jsonReader = new JsonReader(Files.newBufferedReader(Paths.get(jsonFileName), StandardCharsets.UTF_8)))
+        {
+            jsonReader.beginObject();
+
+            while (jsonReader.hasNext())
+            {
+                if (arrayName.equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY)
+                {
+                    jsonReader.beginArray();
+
+                    while (jsonReader.hasNext())
+                    {
+                        consumer.accept(gson.fromJson(jsonReader, elementType));
+                    }
+
+                    jsonReader.endArray();
+                }
+                else
+                {
+                    jsonReader.skipValue();
+                }
+            }
+
+            jsonReader.endObject();
+        }
+        catch (MalformedJsonException e)
+        {
+            throw new JsonSyntaxException(e);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * It reads the array stored under the given top level property like
+     * {@link #convert(String, Class, Consumer)}, but passes every element as
+     * compact JSON text instead of mapping it, so an element which does not
+     * match the element type can be rejected alone, e.g. by
+     * {@link JsonMapper#read}, while the following elements are still read.
+     *
+     * @param arrayName name of the top level array property
+     * @param consumer  element text consumer
+     * @throws UncheckedIOException when the file cannot be read or is not valid JSON
+     */
+    protected void convertElements(final String arrayName, final Consumer<? super String> consumer)
+    {
+        TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+
+        try (JsonReader jsonReader = new JsonReader(Files.newBufferedReader(Paths.get(jsonFileName), StandardCharsets.UTF_8)))
+        {
+            jsonReader.beginObject();
+
+            while (jsonReader.hasNext())
+            {
+                if (arrayName.equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY)
+                {
+                    jsonReader.beginArray();
+
+                    while (jsonReader.hasNext())
+                    {
+                        consumer.accept(elementAdapter.read(jsonReader).toString());
+                    }
+
+                    jsonReader.endArray();
+                }
+                else
+                {
+                    jsonReader.skipValue();
+                }
+            }
+
+            jsonReader.endObject();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * It reads the array like {@link #convert(String, Class, Consumer)}, parsing
+     * the elements on a fork-join pool of the given parallelism. The file is
+     * mapped into memory and split by a structural pre-scan into chunks of whole
+     * elements which are parsed independently. The parsed chunks are passed to
+     * the consumer on the calling thread in file order, so it receives the same
+     * elements in the same order as with the sequential read, up to the first
+     * parsing error, which is thrown like by the sequential read. Small files
+     * and files the pre-scan cannot split are read sequentially.
+     *
+     * @param arrayName   name of the top level array property
+     * @param elementType type of the array elements
+     * @param consumer    element consumer
+     * @param parallelism number of parsing threads
+     * @param <E>         element type
+     * @throws JsonParseException   when the array or an element is malformed
+     * @throws UncheckedIOException when the file cannot be read
+     */
+    protected <E> void convert(final String arrayName, final Class<E> elementType, final Consumer<? super E> consumer,
+                               final int parallelism)
+    {
+        List<ByteBuffer> chunks = parallelism > 1 ? split(arrayName, parallelism) : null;
+
+        if (chunks == null)
+        {
+            convert(arrayName, elementType, consumer);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Deque<ForkJoinTask<ParsedChunk<E>>> tasks = new ArrayDeque<>();
+        Iterator<ByteBuffer> pending = chunks.iterator();
+
+        try
+        {
+            // a bounded window of chunks is parsed ahead of the consumer
+            while (pending.hasNext() || !tasks.isEmpty())
+            {
+                while (pending.hasNext() && tasks.size() < parallelism * CHUNKS_PER_THREAD)
+                {
+                    ByteBuffer chunk = pending.next();
+                    tasks.add(pool.submit(() -> parse(chunk, elementType)));
+                }
+
+                ParsedChunk<E> parsed = tasks.poll().join();
+                parsed.elements.forEach(consumer);
+
+                if (parsed.error instanceof MalformedJsonException)
+                {
+                    throw new JsonSyntaxException(parsed.error);
+                }
+                else if (parsed.error instanceof IOException)
+                {
+                    throw new UncheckedIOException((IOException) parsed.error);
+                }
+                else if (parsed.error != null)
+                {
+                    throw (JsonParseException) parsed.error;
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * It returns the chunks of the array or null when the file should be read sequentially.
+     */
+    private List<ByteBuffer> split(final String arrayName, final int parallelism)
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(jsonFileName), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+
+            if (size < PARALLEL_THRESHOLD || size > Integer.MAX_VALUE) return null;
+
+            int chunkSize = (int) Math.max(MIN_CHUNK_SIZE, size / (parallelism * CHUNKS_PER_THREAD));
+
+            return JsonChunkScanner.split(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), arrayName, chunkSize);
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    private <E> ParsedChunk<E> parse(final ByteBuffer chunk, final Class<E> elementType)
+    {
+        ParsedChunk<E> parsed = new ParsedChunk<>();
+        InputStream elements = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(ARRAY_START), new ByteBufferInputStream(chunk), new ByteArrayInputStream(ARRAY_END))));
+
+        try (JsonReader jsonReader = new JsonReader(new InputStreamReader(elements, StandardCharsets.UTF_8)))
+        {
+            jsonReader.beginArray();
+
+            while (jsonReader.hasNext())
+            {
+                parsed.elements.add(gson.fromJson(jsonReader, elementType));
+            }
+
+            jsonReader.endArray();
+        }
+        catch (JsonParseException | IOException e)
+        {
+            parsed.error = e;
+        }
+
+        return parsed;
+    }
+
+    private static class ParsedChunk<E>
+    {
+        private final List<E> elements = new ArrayList<>();
+        private Exception error;
+    }
+
+    private static class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length)
+        {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+
+            return count;
+        }
+    }
+
+    /**
+     * It writes the elements as an array stored under the given top level property,
+     * one element at a time, so the elements never have to be held in memory at once.
+     *
+     * @param arrayName   name of the top level array property
+     * @param elementType type of the array elements
+     * @param elements    elements to write
+     * @param <E>         element type
+     */
+    protected <E> void convert(final String arrayName, final Class<E> elementType, final Iterator<? extends E> elements)
+    {
+        write(fileWriter ->
+        {
+            JsonWriter jsonWriter = gson.newJsonWriter(fileWriter);
+
+            jsonWriter.beginObject();
+            jsonWriter.name(arrayName);
+            jsonWriter.beginArray();
+
+            while (elements.hasNext())
+            {
+                gson.toJson(elements.next(), elementType, jsonWriter);
+            }
+
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+            jsonWriter.flush();
+        });
+    }
+
+    @FunctionalInterface
+    private interface WriteAction
+    {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * It writes the file through a synced temporary file which atomically replaces the target.
+     */
+    private void write(final WriteAction action)
+    {
+        Path target = Paths.get(jsonFileName);
+        Path temporary = Paths.get(jsonFileName + TEMPORARY_SUFFIX);
+
+        try
+        {
+            try (FileOutputStream outputStream = new FileOutputStream(temporary.toFile());
+                 Writer fileWriter = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)))
+            {
+                action.write(fileWriter);
+                fileWriter.flush();
+                outputStream.getFD().sync();
+            }
+
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,196 @@
+package com.stachera.justyna.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+/**
+ * Developed by Justyna Stachera on 02.03.2019.
+ * Package name: com.stachera.justyna.json
+ * Last modified 18:40.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Append-only journal kept next to a JSON snapshot. Every entry is written
+ * as a single compact JSON line, so adding an object costs one small
+ * sequential write instead of rewriting the whole snapshot. Writing errors
+ * are thrown as {@link UncheckedIOException}.
+ */
+public abstract class JsonJournal<T>
+{
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private final Path journalPath;
+    private final Gson gson = new GsonBuilder().registerTypeAdapterFactory(new ResolvingTypeAdapterFactory()).create();
+    private final Type type = ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
+    private int size = -1;
+
+    public JsonJournal(String jsonFileName)
+    {
+        this.journalPath = Paths.get(jsonFileName + JOURNAL_SUFFIX);
+    }
+
+    public void append(final T obj)
+    {
+        append(Collections.singletonList(obj));
+    }
+
+    /**
+     * It appends all given objects to the journal with a single write and
+     * syncs the journal, so the objects are durable once the method returns.
+     *
+     * @param objects objects to append
+     * @return number of bytes written
+     * @throws UncheckedIOException when the journal cannot be written
+     */
+    public long append(final Collection<? extends T> objects)
+    {
+        StringBuilder lines = new StringBuilder();
+
+        objects.forEach(obj -> lines.append(gson.toJson(obj, type)).append('\n'));
+
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE))
+        {
+            channel.position(channel.size());
+
+            // a torn last line is terminated first, so it cannot swallow the new entries
+            if (!endsWithNewLine(channel)) lines.insert(0, '\n');
+
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(lines));
+            long bytes = buffer.remaining();
+
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+
+            channel.force(false);
+            size = size() + objects.size();
+
+            return bytes;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean endsWithNewLine(final FileChannel channel) throws IOException
+    {
+        long size = channel.size();
+
+        if (size == 0) return true;
+
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+
+        return last.get(0) == '\n';
+    }
+
+    /**
+     * It passes every journal entry, in the order of writing, to the consumer.
+     * A torn last line left by an interrupted write is skipped, the next
+     * append starts on a new line after it.
+     *
+     * @param consumer entry consumer
+     */
+    public void replay(final Consumer<? super T> consumer)
+    {
+        int count = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.isBlank()) continue;
+
+                try
+                {
+                    T obj = gson.fromJson(line, type);
+                    consumer.accept(obj);
+                    count++;
+                }
+                catch (JsonParseException e)
+                {
+                    System.err.println("JOURNAL ENTRY SKIPPED: " + e.getMessage());
+                }
+            }
+        }
+        catch (NoSuchFileException e)
+        {
+            // nothing has been journaled yet
+        }
+        catch (IOException e)
+        {
+            System.err.println(e);
+        }
+
+        size = count;
+    }
+
+    /**
+     * It returns the number of entries in the journal.
+     *
+     * @return journal size
+     */
+    public int size()
+    {
+        if (size < 0)
+        {
+            try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8))
+            {
+                size = (int) reader.lines().filter(line -> !line.isBlank()).count();
+            }
+            catch (NoSuchFileException e)
+            {
+                size = 0;
+            }
+            catch (IOException e)
+            {
+                System.err.println(e);
+                size = 0;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * It removes all entries, typically after they have been compacted
+     * into the snapshot.
+     *
+     * @throws UncheckedIOException when the journal cannot be removed
+     */
+    public void clear()
+    {
+        try
+        {
+            Files.deleteIfExists(journalPath);
+            size = 0;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
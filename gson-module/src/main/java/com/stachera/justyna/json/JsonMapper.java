@@ -0,0 +1,109 @@
+package com.stachera.justyna.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Iterator;
+
+/**
+ * Developed by Justyna Stachera on 18.03.2019.
+ * Package name: com.stachera.justyna.json
+ * Last modified 19:42.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Maps objects to and from compact JSON streams, e.g. network requests and
+ * responses. Objects are written straight to the given writer without
+ * building the whole document as a string first. Instances are thread-safe.
+ */
+public class JsonMapper
+{
+    private final Gson gson = new GsonBuilder()
+            .disableHtmlEscaping()
+            .registerTypeAdapterFactory(new ResolvingTypeAdapterFactory())
+            .create();
+
+    /**
+     * It writes the object as JSON to the writer and flushes it.
+     *
+     * @param obj    object to write
+     * @param writer target writer
+     * @throws IOException when the writer fails
+     */
+    public void write(final Object obj, final Writer writer) throws IOException
+    {
+        JsonWriter jsonWriter = gson.newJsonWriter(writer);
+
+        try
+        {
+            if (obj == null) jsonWriter.nullValue();
+            else gson.toJson(obj, obj.getClass(), jsonWriter);
+        }
+        catch (JsonIOException e)
+        {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        jsonWriter.flush();
+    }
+
+    /**
+     * It writes the elements as a JSON array to the writer one at a time and
+     * flushes it, so the elements never have to be collected first.
+     *
+     * @param elements elements to write
+     * @param writer   target writer
+     * @throws IOException when the writer fails
+     */
+    public void writeArray(final Iterator<?> elements, final Writer writer) throws IOException
+    {
+        JsonWriter jsonWriter = gson.newJsonWriter(writer);
+
+        try
+        {
+            jsonWriter.beginArray();
+
+            while (elements.hasNext())
+            {
+                Object element = elements.next();
+
+                if (element == null) jsonWriter.nullValue();
+                else gson.toJson(element, element.getClass(), jsonWriter);
+            }
+
+            jsonWriter.endArray();
+        }
+        catch (JsonIOException e)
+        {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        jsonWriter.flush();
+    }
+
+    /**
+     * It reads an object of the given type from the reader.
+     *
+     * @param reader source reader
+     * @param type   object type
+     * @param <T>    object type
+     * @return object read or null for an empty document
+     * @throws IllegalArgumentException when the document is not valid JSON of the type
+     */
+    public <T> T read(final Reader reader, final Class<T> type)
+    {
+        try
+        {
+            return gson.fromJson(reader, type);
+        }
+        catch (JsonParseException e)
+        {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.stachera.justyna.json;
+
+/**
+ * Developed by Justyna Stachera on 22.03.2019.
+ * Package name: com.stachera.justyna.json
+ * Last modified 18:05.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Implemented by classes which instances read from JSON have to be replaced
+ * with a canonical instance, e.g. immutable classes computing derived fields
+ * in their constructor. The converters, journals and mappers of this module
+ * call {@link #resolve()} on every such object they read, converters with a
+ * {@link SymbolTable} call {@link #resolve(SymbolTable)} instead.
+ *
+ * @param <T> type of the resolved object
+ */
+public interface JsonResolvable<T>
+{
+    /**
+     * It returns the object which replaces the one read from JSON.
+     *
+     * @return resolved object
+     */
+    T resolve();
+
+    /**
+     * It returns the object which replaces the one read from JSON, with its
+     * repeated strings interned in the table. By default nothing is interned.
+     *
+     * @param symbolTable table of canonical strings
+     * @return resolved object
+     */
+    default T resolve(SymbolTable symbolTable)
+    {
+        return resolve();
+    }
+}
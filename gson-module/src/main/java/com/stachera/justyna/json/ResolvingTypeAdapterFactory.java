@@ -0,0 +1,66 @@
+package com.stachera.justyna.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Developed by Justyna Stachera on 22.03.2019.
+ * Package name: com.stachera.justyna.json
+ * Last modified 18:21.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Gson adapter factory replacing every {@link JsonResolvable} read with its resolved instance.
+ */
+class ResolvingTypeAdapterFactory implements TypeAdapterFactory
+{
+    private final SymbolTable symbolTable;
+
+    ResolvingTypeAdapterFactory()
+    {
+        this(null);
+    }
+
+    /**
+     * @param symbolTable table the resolved objects intern their strings in, null to disable interning
+     */
+    ResolvingTypeAdapterFactory(final SymbolTable symbolTable)
+    {
+        this.symbolTable = symbolTable;
+    }
+
+    @Override
+    public <T> TypeAdapter<T> create(final Gson gson, final TypeToken<T> typeToken)
+    {
+        if (!JsonResolvable.class.isAssignableFrom(typeToken.getRawType())) return null;
+
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, typeToken);
+
+        return new TypeAdapter<>()
+        {
+            @Override
+            public void write(final JsonWriter out, final T value) throws IOException
+            {
+                delegate.write(out, value);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T read(final JsonReader in) throws IOException
+            {
+                T value = delegate.read(in);
+
+                if (value == null) return null;
+
+                JsonResolvable<?> resolvable = (JsonResolvable<?>) value;
+
+                return (T) (symbolTable == null ? resolvable.resolve() : resolvable.resolve(symbolTable));
+            }
+        };
+    }
+}
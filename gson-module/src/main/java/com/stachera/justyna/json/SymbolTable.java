@@ -0,0 +1,40 @@
+package com.stachera.justyna.json;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Developed by Justyna Stachera on 21.03.2019.
+ * Package name: com.stachera.justyna.json
+ * Last modified 19:16.
+ * Copyright (c) 2019. All rights reserved.
+ *
+ * Table of canonical string instances. A converter using the table passes
+ * it to {@link JsonResolvable#resolve(SymbolTable)} of every object read, which
+ * interns the fields worth it, so a value repeated in millions of objects
+ * (e.g. a car model) is kept in memory once. Instances are thread-safe.
+ */
+public class SymbolTable
+{
+    private final Map<String, String> symbols = new ConcurrentHashMap<>();
+
+    /**
+     * It returns the canonical instance of the value.
+     *
+     * @param value value to intern
+     * @return equal canonical instance or null for null
+     */
+    public String intern(final String value)
+    {
+        if (value == null) return null;
+
+        String symbol = symbols.putIfAbsent(value, value);
+
+        return symbol == null ? value : symbol;
+    }
+
+    public int size()
+    {
+        return symbols.size();
+    }
+}
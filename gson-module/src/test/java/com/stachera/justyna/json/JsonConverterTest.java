@@ -0,0 +1,118 @@
+package com.stachera.justyna.json;
+
+import com.google.gson.JsonParseException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Developed by Justyna Stachera on 15.01.2019.
+ * Package name: com.stachera.justyna.json
+ * Last modified 21:08.
+ * Copyright (c) 2019. All rights reserved.
+ */
+public class JsonConverterTest
+{
+    private static final String ARRAY_NAME = "values";
+    private static final int ELEMENT_COUNT = 60_000;
+    private static final int PARALLELISM = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parallelReadGivesElementsOfSequentialRead() throws IOException
+    {
+        Path file = write(-1);
+
+        assertTrue("file too small to be read in parallel", Files.size(file) > 1 << 20);
+
+        List<String> sequential = read(file, 1);
+
+        assertEquals(ELEMENT_COUNT, sequential.size());
+        assertEquals(sequential, read(file, PARALLELISM));
+    }
+
+    @Test
+    public void parallelReadThrowsMalformedElementLikeSequentialRead() throws IOException
+    {
+        Path file = write(ELEMENT_COUNT / 2);
+        List<String> sequential = new ArrayList<>();
+        List<String> parallel = new ArrayList<>();
+
+        assertMalformed(file, sequential, 1);
+        assertMalformed(file, parallel, PARALLELISM);
+
+        assertEquals(ELEMENT_COUNT / 2, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void readThrowsBrokenSyntax() throws IOException
+    {
+        Path file = folder.newFile("broken.json").toPath();
+        Files.write(file, "{\"values\": [\"a\", \"b\" \"c\"]}".getBytes(StandardCharsets.UTF_8));
+
+        assertMalformed(file, new ArrayList<>(), 1);
+    }
+
+    /**
+     * It writes the elements, replacing the element at the given index with an object.
+     */
+    private Path write(final int malformedIndex) throws IOException
+    {
+        StringBuilder json = new StringBuilder("{\n  \"").append(ARRAY_NAME).append("\": [\n");
+
+        for (int i = 0; i < ELEMENT_COUNT; i++)
+        {
+            if (i > 0) json.append(",\n");
+
+            if (i == malformedIndex) json.append("    {\"value\": ").append(i).append("}");
+            else json.append("    \"value ").append(i).append(" with [brackets], {braces} and \\\"quotes\\\"\"");
+        }
+
+        json.append("\n  ]\n}\n");
+
+        Path file = folder.newFile().toPath();
+        Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    private static List<String> read(final Path file, final int parallelism)
+    {
+        List<String> elements = new ArrayList<>();
+        converter(file).convert(ARRAY_NAME, String.class, elements::add, parallelism);
+
+        return elements;
+    }
+
+    private static void assertMalformed(final Path file, final List<String> elements, final int parallelism)
+    {
+        try
+        {
+            converter(file).convert(ARRAY_NAME, String.class, elements::add, parallelism);
+            fail("malformed file read without error");
+        }
+        catch (JsonParseException e)
+        {
+            // expected
+        }
+    }
+
+    private static JsonConverter<Object> converter(final Path file)
+    {
+        return new JsonConverter<Object>(file.toString()) {};
+    }
+}
@@ -0,0 +1,79 @@
+package com.stachera.justyna.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Developed by Justyna Stachera on 02.03.2019.
+ * Package name: com.stachera.justyna.json
+ * Last modified 18:40.
+ * Copyright (c) 2019. All rights reserved.
+ */
+public class JsonJournalTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysEntriesInOrderOfWriting() throws IOException
+    {
+        String fileName = folder.newFile("cars.json").getPath();
+
+        journal(fileName).append(Arrays.asList("first", "second"));
+        journal(fileName).append("third");
+
+        assertEquals(Arrays.asList("first", "second", "third"), replay(fileName));
+        assertEquals(3, journal(fileName).size());
+    }
+
+    @Test
+    public void skipsTornLastLineAndKeepsLaterEntries() throws IOException
+    {
+        String fileName = folder.newFile("cars.json").getPath();
+        Path journalPath = Paths.get(fileName + ".journal");
+
+        journal(fileName).append("first");
+        Files.write(journalPath, "\"sec".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertEquals(Arrays.asList("first"), replay(fileName));
+
+        journal(fileName).append("third");
+
+        assertEquals(Arrays.asList("first", "third"), replay(fileName));
+    }
+
+    @Test
+    public void replaysNothingWithoutJournal() throws IOException
+    {
+        String fileName = folder.newFile("cars.json").getPath();
+
+        assertEquals(new ArrayList<String>(), replay(fileName));
+        assertEquals(0, journal(fileName).size());
+    }
+
+    private static JsonJournal<String> journal(final String fileName)
+    {
+        return new JsonJournal<String>(fileName) {};
+    }
+
+    private static List<String> replay(final String fileName)
+    {
+        List<String> entries = new ArrayList<>();
+        journal(fileName).replay(entries::add);
+
+        return entries;
+    }
+}